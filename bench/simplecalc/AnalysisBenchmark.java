@@ -0,0 +1,85 @@
+// AnalysisBenchmark.java
+package simplecalc;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Benchmarks JMH del Lexer, del Parser y de la validación completa (Analysis)
+// sobre las formas de BenchInputs. Se corren con "ant bench".
+//
+// Además de ops/s, cada benchmark reporta el contador auxiliar "tokens" como
+// tokens/s. Con "-prof gc" (el valor por defecto de bench.args), las
+// asignaciones por token son gc.alloc.rate.norm / tokensPerOp, y tokensPerOp se
+// imprime al preparar cada forma.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @Param({"SHORT_STATEMENTS", "LONG_EXPRESSIONS", "DEEP_PARENS", "ERROR_HEAVY", "HUGE_STRINGS"})
+    public BenchInputs.Shape shape;
+
+    @Param({"1000000"})
+    public int size; // Caracteres aproximados de cada programa
+
+    private String source;
+    private TokenBuffer tokens; // Ya escaneado, para medir solo el Parser
+    private int tokensPerOp;
+
+    // Tokens procesados, reportados por JMH como tokens/s
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TokenCounter {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchInputs.generate(shape, size);
+        tokens = new Lexer(source).scanTokenBuffer();
+        tokensPerOp = tokens.size();
+        System.out.printf("%n%s: %d caracteres, tokensPerOp = %d%n", shape, source.length(), tokensPerOp);
+    }
+
+    @Benchmark
+    public TokenBuffer lex(TokenCounter counter) {
+        TokenBuffer result = new Lexer(source).scanTokenBuffer();
+        counter.tokens += result.size();
+        return result;
+    }
+
+    @Benchmark
+    public boolean parse(TokenCounter counter) {
+        Parser parser = new Parser(tokens);
+        counter.tokens += tokensPerOp;
+        return parser.parse();
+    }
+
+    @Benchmark
+    public Analysis validate(TokenCounter counter) {
+        Analysis analysis = Analysis.of(source);
+        counter.tokens += analysis.tokenCount();
+        return analysis;
+    }
+}
@@ -0,0 +1,87 @@
+// BenchInputs.java
+package simplecalc;
+
+// Programas sintéticos para los benchmarks. Cada forma ejercita una parte
+// distinta del Lexer y del Parser; el contenido es determinista y el tamaño,
+// aproximado (en caracteres).
+public final class BenchInputs {
+
+    public enum Shape {
+        SHORT_STATEMENTS, // Muchas sentencias cortas: el caso típico
+        LONG_EXPRESSIONS, // Pocas sentencias con expresiones de cientos de términos
+        DEEP_PARENS,      // Paréntesis anidados: recursión de expresion_aritmetica
+        ERROR_HEAVY,      // Errores léxicos y sintácticos en casi cada línea; el Parser
+                          // se detiene en el primero que no puede recuperar
+        HUGE_STRINGS      // SALIDA de cadenas literales muy largas
+    }
+
+    // Profundidad de anidamiento de DEEP_PARENS: alta, pero lejos de agotar la pila
+    private static final int PAREN_DEPTH = 200;
+    private static final int LONG_EXPRESSION_TERMS = 500;
+    private static final int HUGE_STRING_LENGTH = 8000;
+
+    private BenchInputs() {
+    }
+
+    public static String generate(Shape shape, int targetChars) {
+        StringBuilder sb = new StringBuilder(targetChars + 1024);
+        sb.append("OPERACION ENTRADA {\n");
+        sb.append(" ENTRADA A.\n");
+        sb.append(" B = 2.\n");
+        int i = 0;
+        while (sb.length() < targetChars) {
+            switch (shape) {
+                case SHORT_STATEMENTS:
+                    sb.append(" V").append(i).append(" = A * ").append(i % 100).append(" + B.\n");
+                    if (i % 10 == 0) {
+                        sb.append(" SI (V").append(i).append(" > 5) SALIDA V").append(i).append(".\n");
+                    }
+                    break;
+                case LONG_EXPRESSIONS:
+                    sb.append(" V").append(i).append(" = A");
+                    for (int t = 1; t < LONG_EXPRESSION_TERMS; t++) {
+                        sb.append(" ").append("+-*/".charAt(t % 4)).append(" ").append(t % 4 == 3 ? "B" : "A");
+                    }
+                    sb.append(".\n");
+                    break;
+                case DEEP_PARENS:
+                    sb.append(" V").append(i).append(" = ");
+                    for (int d = 0; d < PAREN_DEPTH; d++) {
+                        sb.append("(A + ");
+                    }
+                    sb.append("B");
+                    for (int d = 0; d < PAREN_DEPTH; d++) {
+                        sb.append(")");
+                    }
+                    sb.append(".\n");
+                    break;
+                case ERROR_HEAVY:
+                    switch (i % 4) {
+                        case 0:
+                            sb.append(" X").append(i).append(" = A @ 3.\n");       // Carácter inválido
+                            break;
+                        case 1:
+                            sb.append(" SI (A <= 3) SALIDA A.\n");                // '<=' no permitido
+                            break;
+                        case 2:
+                            sb.append(" Y").append(i).append(" = (A + .\n");      // Expresión incompleta
+                            break;
+                        default:
+                            sb.append(" SALIDA \"sin cerrar\n");                   // Cadena sin cerrar
+                    }
+                    break;
+                default: // HUGE_STRINGS
+                    sb.append(" SALIDA \"");
+                    for (int c = 0; c < HUGE_STRING_LENGTH; c++) {
+                        sb.append((char) ('a' + (c + i) % 26));
+                    }
+                    sb.append("\".\n");
+            }
+            i++;
+        }
+        sb.append(" SALIDA B.\n");
+        sb.append("}\n");
+        sb.append("SALIDA\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,102 @@
+// Analysis.java
+package simplecalc;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Resultado de validar un programa completo (léxico + sintáctico + semántico),
+// igual al que muestra el IDE con "Procesar Código", pero sin conservar los
+// tokens. Es lo que usan los modos sin interfaz gráfica.
+public record Analysis(int tokenCount, List<Diagnostic> lexicalErrors, List<Diagnostic> errors, boolean valid) {
+    // Versión de la gramática y de los mensajes: cambiarla cuando un mismo código
+    // pueda dar otro resultado, para invalidar las entradas de AnalysisCache.
+    public static final int VERSION = 2;
+
+    // Lexer y Parser de cada hilo, reutilizados con reset(): validar muchos
+    // programas chicos seguidos no vuelve a reservar la lista de tokens, el
+    // LineIndex, la lista de errores ni la tabla de símbolos. Los programas más
+    // largos que POOLED_MAX_LENGTH usan instancias nuevas para que sus buffers
+    // no queden retenidos por el hilo.
+    private static final int POOLED_MAX_LENGTH = 1 << 16;
+    private static final ThreadLocal<Lexer> LEXERS = ThreadLocal.withInitial(Lexer::new);
+    private static final ThreadLocal<Parser> PARSERS = ThreadLocal.withInitial(Parser::new);
+
+    public static Analysis of(CharSequence sourceCode) {
+        return of(sourceCode, 0);
+    }
+
+    // Con un límite de errores entre léxicos y del Parser (ver
+    // Parser.setMaxErrors): 0 analiza todo; 1 es el modo "válido o no". Si el
+    // Lexer ya llegó al límite ni hace falta el Parser. El tiempo de cada fase,
+    // los tokens y los errores se registran en AnalysisMetrics.get().
+    public static Analysis of(CharSequence sourceCode, int maxErrors) {
+        boolean pooled = sourceCode.length() <= POOLED_MAX_LENGTH;
+        Lexer lexer;
+        if (pooled) {
+            lexer = LEXERS.get();
+            lexer.reset(sourceCode);
+        } else {
+            lexer = new Lexer(sourceCode);
+        }
+        lexer.setMaxErrors(maxErrors);
+        AnalysisMetrics metrics = AnalysisMetrics.get();
+        long start = System.nanoTime();
+        TokenBuffer tokens = lexer.scanTokenBuffer();
+        metrics.recordLex(sourceCode, tokens, System.nanoTime() - start);
+        return parse(tokens, maxErrors, pooled, metrics);
+    }
+
+    // Como of(), pero el archivo se mapea en memoria y se escanea con ByteLexer,
+    // sin decodificarlo a un String: pensado para archivos muy grandes. Los
+    // offsets y columnas de los diagnósticos quedan en bytes.
+    public static Analysis ofFile(Path file, int maxErrors) throws IOException {
+        ByteLexer lexer = ByteLexer.map(file);
+        lexer.setMaxErrors(maxErrors);
+        AnalysisMetrics metrics = AnalysisMetrics.get();
+        long start = System.nanoTime();
+        TokenBuffer tokens = lexer.scanTokenBuffer();
+        metrics.recordLex(tokens.getSource(), tokens, System.nanoTime() - start);
+        return parse(tokens, maxErrors, false, metrics);
+    }
+
+    private static Analysis parse(TokenBuffer tokens, int maxErrors, boolean pooled, AnalysisMetrics metrics) {
+        List<Diagnostic> lexicalErrors = lexicalErrors(tokens);
+        if (maxErrors > 0 && lexicalErrors.size() >= maxErrors) {
+            return new Analysis(tokens.size(), lexicalErrors, List.of(), false);
+        }
+        Parser parser;
+        if (pooled) {
+            parser = PARSERS.get();
+            parser.reset(tokens);
+        } else {
+            parser = new Parser(tokens);
+        }
+        parser.setMaxErrors(maxErrors > 0 ? maxErrors - lexicalErrors.size() : 0);
+        parser.setMetrics(metrics);
+        long start = System.nanoTime();
+        boolean syntaxValid = parser.parse();
+        metrics.recordParse(parser.getDiagnostics(), System.nanoTime() - start);
+        // La lista del Parser reutilizado se vacía en el próximo reset()
+        List<Diagnostic> errors = pooled ? List.copyOf(parser.getDiagnostics()) : parser.getDiagnostics();
+        return new Analysis(tokens.size(), lexicalErrors, errors, lexicalErrors.isEmpty() && syntaxValid);
+    }
+
+    // Errores de los tokens ERROR, en orden.
+    public static List<Diagnostic> lexicalErrors(TokenBuffer tokens) {
+        List<Diagnostic> lexicalErrors = new ArrayList<>(tokens.errorCount());
+        for (int k = 0; k < tokens.errorCount(); k++) {
+            lexicalErrors.add(tokens.errorDiagnostic(tokens.errorToken(k)));
+        }
+        return lexicalErrors;
+    }
+
+    // Todos los diagnósticos: primero los léxicos, después los del Parser.
+    public List<Diagnostic> diagnostics() {
+        List<Diagnostic> all = new ArrayList<>(lexicalErrors.size() + errors.size());
+        all.addAll(lexicalErrors);
+        all.addAll(errors);
+        return all;
+    }
+}
@@ -0,0 +1,288 @@
+// AnalysisCache.java
+package simplecalc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Caché en disco de resultados de Analysis, direccionada por contenido: la clave
+// es el SHA-256 de Analysis.VERSION más los bytes del código, así que un archivo
+// sin cambios (aunque se mueva o se renombre) no se vuelve a analizar, y un
+// cambio de gramática o de mensajes invalida todo sin borrar nada a mano.
+//
+// Cada entrada es un archivo <clave>.sca con el formato (DataOutputStream):
+//   int MAGIC, short FORMAT, int tokenCount, boolean valid,
+//   int n, n x diagnóstico (errores léxicos), int m, m x diagnóstico (del Parser)
+// donde cada diagnóstico es
+//   byte kind, byte severity, int offset, int length, int line, int column,
+//   byte key, byte k, k x UTF (argumentos)
+// (ordinales de los enums de Diagnostic; un cambio en ellos cambia Analysis.VERSION)
+// Las entradas se escriben en un temporal y se renombran, así que otros hilos o
+// procesos nunca ven una a medias. La fecha de modificación hace de último uso:
+// un acierto la actualiza y, si el directorio pasa de maxBytes, se borran las
+// más viejas (LRU).
+//
+// Es segura entre hilos. Un error de E/S nunca detiene el análisis: la entrada
+// cuenta como fallo y el resultado se calcula normalmente.
+public class AnalysisCache {
+    private static final int MAGIC = 0x53434143; // "SCAC"
+    private static final short FORMAT = 2;
+    private static final String SUFFIX = ".sca";
+    // Al desalojar se baja hasta este porcentaje del máximo para no hacerlo en cada escritura
+    private static final int EVICT_TO_PERCENT = 90;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Object evictionLock = new Object();
+
+    public AnalysisCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        long size = 0;
+        for (Entry entry : listEntries()) {
+            size += entry.size;
+        }
+        totalBytes.set(size);
+        evictIfNeeded();
+    }
+
+    // Resultado del análisis de 'source', de la caché si está y si no calculado y guardado.
+    public Analysis analyze(byte[] source) {
+        return analyze(source, 0);
+    }
+
+    // Igual, con un límite de errores (ver Analysis.of(CharSequence, int)).
+    public Analysis analyze(byte[] source, int maxErrors) {
+        String key = key(source, maxErrors);
+        Analysis cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Analysis analysis = Analysis.of(new String(source, StandardCharsets.UTF_8), maxErrors);
+        put(key, analysis);
+        return analysis;
+    }
+
+    // Clave de contenido: SHA-256 en hexadecimal.
+    public static String key(byte[] source) {
+        return key(source, 0);
+    }
+
+    // Un análisis con límite de errores puede dar menos diagnósticos, así que
+    // el límite es parte de la clave.
+    public static String key(byte[] source, int maxErrors) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String prefix = "simplecalc-analysis-" + Analysis.VERSION + (maxErrors > 0 ? "-max" + maxErrors : "");
+            digest.update((prefix + "\0").getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest(source);
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible.", e); // Todo JRE lo trae
+        }
+    }
+
+    // La entrada de 'key', o null (fallo) si no está o no se puede leer.
+    public Analysis get(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT) {
+                throw new IOException("Formato de caché desconocido: " + file);
+            }
+            int tokenCount = in.readInt();
+            boolean valid = in.readBoolean();
+            List<Diagnostic> lexicalErrors = readDiagnostics(in);
+            List<Diagnostic> errors = readDiagnostics(in);
+            hits.increment();
+            touch(file);
+            return new Analysis(tokenCount, lexicalErrors, errors, valid);
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // Entrada dañada o truncada: se descarta y se recalcula
+            misses.increment();
+            delete(file);
+            return null;
+        }
+    }
+
+    public void put(String key, Analysis analysis) {
+        Path file = directory.resolve(key + SUFFIX);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT);
+                out.writeInt(analysis.tokenCount());
+                out.writeBoolean(analysis.valid());
+                writeDiagnostics(out, analysis.lexicalErrors());
+                writeDiagnostics(out, analysis.errors());
+            }
+            long size = Files.size(temp);
+            long replaced = Files.exists(file) ? Files.size(file) : 0;
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            if (totalBytes.addAndGet(size - replaced) > maxBytes) {
+                evictIfNeeded();
+            }
+        } catch (IOException e) {
+            // Sin caché para este archivo; el resultado ya está calculado
+        } finally {
+            if (temp != null) {
+                delete(temp);
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getSizeBytes() {
+        return totalBytes.get();
+    }
+
+    // ---- LRU ----
+
+    private record Entry(Path file, long size, FileTime lastUsed) {
+    }
+
+    private void evictIfNeeded() throws IOException {
+        synchronized (evictionLock) {
+            if (totalBytes.get() <= maxBytes) {
+                return;
+            }
+            List<Entry> entries = listEntries();
+            long size = 0;
+            for (Entry entry : entries) {
+                size += entry.size;
+            }
+            Collections.sort(entries, Comparator.comparing(Entry::lastUsed));
+            long target = maxBytes / 100 * EVICT_TO_PERCENT;
+            for (int i = 0; i < entries.size() && size > target; i++) {
+                if (delete(entries.get(i).file)) {
+                    size -= entries.get(i).size;
+                    evictions.increment();
+                }
+            }
+            totalBytes.set(size);
+        }
+    }
+
+    private List<Entry> listEntries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime()));
+                } catch (NoSuchFileException e) {
+                    // Otro proceso la borró mientras se listaba
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Solo afecta el orden de desalojo
+        }
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static final Diagnostic.Kind[] KINDS = Diagnostic.Kind.values();
+    private static final Diagnostic.Severity[] SEVERITIES = Diagnostic.Severity.values();
+    private static final Diagnostic.Key[] KEYS = Diagnostic.Key.values();
+
+    private static void writeDiagnostics(DataOutputStream out, List<Diagnostic> diagnostics) throws IOException {
+        out.writeInt(diagnostics.size());
+        for (Diagnostic d : diagnostics) {
+            out.writeByte(d.kind().ordinal());
+            out.writeByte(d.severity().ordinal());
+            out.writeInt(d.offset());
+            out.writeInt(d.length());
+            out.writeInt(d.line());
+            out.writeInt(d.column());
+            out.writeByte(d.key().ordinal());
+            out.writeByte(d.args().length);
+            for (Object arg : d.args()) {
+                out.writeUTF(String.valueOf(arg)); // Los argumentos se muestran con %s
+            }
+        }
+    }
+
+    private static List<Diagnostic> readDiagnostics(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Cantidad negativa en la caché.");
+        }
+        List<Diagnostic> diagnostics = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            Diagnostic.Kind kind = KINDS[in.readUnsignedByte()];
+            Diagnostic.Severity severity = SEVERITIES[in.readUnsignedByte()];
+            int offset = in.readInt();
+            int length = in.readInt();
+            int line = in.readInt();
+            int column = in.readInt();
+            Diagnostic.Key key = KEYS[in.readUnsignedByte()];
+            Object[] args = new Object[in.readUnsignedByte()];
+            for (int a = 0; a < args.length; a++) {
+                args[a] = in.readUTF();
+            }
+            diagnostics.add(new Diagnostic(kind, severity, offset, length, line, column, key, args));
+        }
+        return diagnostics;
+    }
+}
@@ -0,0 +1,253 @@
+// AnalysisMetrics.java
+package simplecalc;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Métricas de producción del análisis: cuánto tiempo se va en el Lexer y cuánto
+// en el Parser, tokens por tipo, errores por clase, recuperaciones del Parser y
+// caracteres procesados. Las registran Analysis.of() (validación por lotes,
+// AnalysisCache, el servidor) y la ejecución RUN de ValidationServer.
+//
+// Todo son LongAdder, así que registrar desde muchos hilos a la vez no compite
+// por una misma variable. Los tokens por tipo se cuentan con una pasada sobre
+// el TokenBuffer ya escaneado y se suman una vez por código, no por token.
+//
+// La instancia compartida se publica como MXBean la primera vez que se pide.
+public class AnalysisMetrics implements AnalysisMetricsMXBean {
+    public static final String OBJECT_NAME = "simplecalc:type=AnalysisMetrics";
+
+    private static final Token.TokenType[] TYPES = Token.TokenType.values();
+    private static final Diagnostic.Kind[] KINDS = Diagnostic.Kind.values();
+
+    private final LongAdder sources = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder[] tokensByType = adders(TYPES.length);
+    private final LongAdder[] errorsByKind = adders(KINDS.length);
+    private final LongAdder recoveredTokens = new LongAdder();
+    private final Histogram recoverySizes = new Histogram();
+    private final Histogram lexNanos = new Histogram();
+    private final Histogram parseNanos = new Histogram();
+
+    // ---- Instancia compartida ----
+
+    private static final class Shared {
+        static final AnalysisMetrics INSTANCE = register(new AnalysisMetrics());
+    }
+
+    // La instancia de todo el proceso, publicada en el MBeanServer de la plataforma.
+    public static AnalysisMetrics get() {
+        return Shared.INSTANCE;
+    }
+
+    private static AnalysisMetrics register(AnalysisMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            // Sin JMX las métricas se siguen acumulando; solo no se publican
+            System.err.println("No se pudieron publicar las métricas por JMX: " + e.getMessage());
+        }
+        return metrics;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // ---- Registro ----
+
+    // Un escaneo completo de 'source' que tardó 'nanos' y produjo 'buffer'.
+    public void recordLex(CharSequence source, TokenBuffer buffer, long nanos) {
+        sources.increment();
+        characters.add(source.length());
+        tokens.add(buffer.size());
+        int[] counts = new int[TYPES.length];
+        buffer.countByType(counts);
+        for (int t = 0; t < counts.length; t++) {
+            if (counts[t] > 0) {
+                tokensByType[t].add(counts[t]);
+            }
+        }
+        if (buffer.errorCount() > 0) {
+            errorsByKind[Diagnostic.Kind.LEXICAL.ordinal()].add(buffer.errorCount());
+        }
+        lexNanos.record(nanos);
+    }
+
+    // Un parse() que tardó 'nanos' y reportó 'diagnostics'.
+    public void recordParse(List<Diagnostic> diagnostics, long nanos) {
+        for (Diagnostic diagnostic : diagnostics) {
+            errorsByKind[diagnostic.kind().ordinal()].increment();
+        }
+        parseNanos.record(nanos);
+    }
+
+    // Lo llama el Parser en cada synchronizeToStatementBoundary().
+    void recordRecovery(int skippedTokens) {
+        recoveredTokens.add(skippedTokens);
+        recoverySizes.record(skippedTokens);
+    }
+
+    // ---- MXBean ----
+
+    @Override
+    public long getSourcesAnalyzed() {
+        return sources.sum();
+    }
+
+    @Override
+    public long getCharactersProcessed() {
+        return characters.sum();
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    @Override
+    public Map<String, Long> getTokensByType() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int t = 0; t < TYPES.length; t++) {
+            result.put(TYPES[t].name(), tokensByType[t].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByKind() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int k = 0; k < KINDS.length; k++) {
+            result.put(KINDS[k].name(), errorsByKind[k].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public long getRecoveries() {
+        return recoverySizes.count();
+    }
+
+    @Override
+    public long getRecoveredTokens() {
+        return recoveredTokens.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRecoverySizes() {
+        return recoverySizes.summary(1);
+    }
+
+    @Override
+    public Map<String, Long> getLexLatencyMicros() {
+        return lexNanos.summary(1000);
+    }
+
+    @Override
+    public Map<String, Long> getParseLatencyMicros() {
+        return parseNanos.summary(1000);
+    }
+
+    @Override
+    public long getLexCharactersPerSecond() {
+        long nanos = lexNanos.sum();
+        return (nanos == 0) ? 0 : (long) (characters.sum() * 1e9 / nanos);
+    }
+
+    @Override
+    public void reset() {
+        sources.reset();
+        characters.reset();
+        tokens.reset();
+        for (LongAdder adder : tokensByType) {
+            adder.reset();
+        }
+        for (LongAdder adder : errorsByKind) {
+            adder.reset();
+        }
+        recoveredTokens.reset();
+        recoverySizes.reset();
+        lexNanos.reset();
+        parseNanos.reset();
+    }
+
+    // ---- Histograma ----
+
+    // Histograma de valores no negativos con cubetas por potencia de dos: la
+    // cubeta b tiene los valores de [2^(b-1), 2^b). Los percentiles se reportan
+    // como el límite superior de su cubeta (error de a lo sumo el doble), sin
+    // pasar del máximo observado.
+    static final class Histogram {
+        private final LongAdder[] buckets = adders(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            value = Math.max(value, 0);
+            buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long sum() {
+            return sum.sum();
+        }
+
+        // Percentil 'p' (0 a 100).
+        long percentile(double p) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p / 100.0 * total);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b].sum();
+                if (seen >= Math.max(rank, 1)) {
+                    long upper = (b == 0) ? 0 : (b >= 63) ? Long.MAX_VALUE : (1L << b) - 1;
+                    return Math.min(upper, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        // Resumen para el MXBean, con los valores divididos por 'unit'.
+        Map<String, Long> summary(long unit) {
+            long total = count.sum();
+            Map<String, Long> result = new LinkedHashMap<>();
+            result.put("count", total);
+            result.put("mean", (total == 0) ? 0 : sum.sum() / total / unit);
+            result.put("p50", percentile(50) / unit);
+            result.put("p90", percentile(90) / unit);
+            result.put("p99", percentile(99) / unit);
+            result.put("max", max.get() / unit);
+            return result;
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// AnalysisMetricsMXBean.java
+package simplecalc;
+
+import java.util.Map;
+
+// Interfaz de administración de AnalysisMetrics, publicada como
+// simplecalc:type=AnalysisMetrics en el MBeanServer de la plataforma (se ve con
+// JConsole o VisualVM). Los contadores son acumulados desde el arranque o desde
+// el último reset(); las latencias están en microsegundos y los resúmenes de
+// histogramas tienen las claves count, mean, p50, p90, p99 y max.
+public interface AnalysisMetricsMXBean {
+    long getSourcesAnalyzed();
+
+    long getCharactersProcessed();
+
+    long getTokens();
+
+    Map<String, Long> getTokensByType();
+
+    Map<String, Long> getErrorsByKind();
+
+    // Invocaciones de synchronizeToStatementBoundary() y tokens que descartaron en total.
+    long getRecoveries();
+
+    long getRecoveredTokens();
+
+    // Tokens descartados por cada recuperación.
+    Map<String, Long> getRecoverySizes();
+
+    Map<String, Long> getLexLatencyMicros();
+
+    Map<String, Long> getParseLatencyMicros();
+
+    // Caracteres por segundo de Lexer, sobre el tiempo total medido en esa fase.
+    long getLexCharactersPerSecond();
+
+    void reset();
+}
@@ -0,0 +1,72 @@
+// Ast.java
+package simplecalc;
+
+import java.util.List;
+
+// Árbol de sintaxis inmutable que produce el Parser para un programa válido.
+// Las variables ya vienen resueltas a un slot entero para que la ejecución
+// trabaje sobre un int[] en lugar de buscar nombres.
+public final class Ast {
+
+    private Ast() {
+    }
+
+    // 'variables' da el nombre de cada slot: variables.get(slot).
+    public record Program(List<Statement> statements, List<String> variables) {
+        public Program {
+            statements = List.copyOf(statements);
+            variables = List.copyOf(variables);
+        }
+    }
+
+    // ---- Sentencias ----
+
+    public sealed interface Statement permits Assignment, Input, Output, If {
+    }
+
+    public record Assignment(Var target, Expr value) implements Statement {
+    }
+
+    public record Input(Var target) implements Statement {
+    }
+
+    public record Output(OutputValue value) implements Statement {
+    }
+
+    // La acción de un SI es una única sentencia SALIDA o asignación.
+    public record If(Condition condition, Statement action) implements Statement {
+    }
+
+    public record Condition(Expr left, RelOp op, Expr right) {
+    }
+
+    public enum RelOp {
+        MENOR, MAYOR, IGUAL
+    }
+
+    // ---- Expresiones ----
+
+    public sealed interface Expr permits Num, Var, Binary {
+    }
+
+    // Lo que puede aparecer después de SALIDA: un ID, un número o una cadena.
+    public sealed interface OutputValue permits Num, Var, Text {
+    }
+
+    public record Num(int value) implements Expr, OutputValue {
+    }
+
+    public record Var(String name, int slot) implements Expr, OutputValue {
+    }
+
+    public record Text(String value) implements OutputValue {
+    }
+
+    // 'line' y 'column' son los del operador, para reportar p. ej. divisiones entre cero.
+    public record Binary(ArithOp op, Expr left, Expr right, int line, int column) implements Expr {
+    }
+
+    public enum ArithOp {
+        SUMA, RESTA, MULT, DIV
+    }
+}
@@ -0,0 +1,408 @@
+// BatchValidator.java
+package simplecalc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Modo de línea de comandos: valida muchos programas sin abrir el IDE. Cada
+// archivo se analiza por separado (léxico y sintáctico no comparten estado),
+// así que se reparten entre todos los núcleos.
+//
+// Uso: simplecalc [opciones] ARCHIVO|DIRECTORIO|GLOB...
+//   --threads=N      hilos de análisis (por defecto, uno por núcleo)
+//   --glob=PATRÓN    archivos que se toman de los directorios (por defecto *.sc)
+//   --output=ARCHIVO resultados en un archivo en lugar de la salida estándar
+//   --cache=DIR      reutiliza resultados de corridas anteriores (AnalysisCache)
+//   --cache-size=MB  tamaño máximo de la caché (por defecto 64)
+//   --max-errors=N   deja de analizar un archivo en su error N (por defecto, todos)
+//   --fail-fast      igual que --max-errors=1: solo interesa si es válido
+//   --mmap           escanea el archivo mapeado con ByteLexer (offsets y columnas en bytes)
+//   --quiet          sin el resumen final
+//
+// Salida: una línea JSON por archivo, en el orden de entrada, por ejemplo
+//   {"file":"a.sc","status":"invalid","bytes":120,"tokens":37,"millis":0.412,"cached":false,"diagnostics":[
+//    {"kind":"SYNTAX","key":"MESSAGE","line":3,"column":1,"offset":41,"length":1,"message":"[Línea 3, Col 1] ..."}]}
+// donde status es "valid", "invalid" o "error" (no se pudo leer o analizar).
+// Los diagnósticos sin posición (p. ej. un archivo ilegible) tienen offset -1.
+// El resumen con archivos/s y MB/s va a la salida de errores.
+//
+// Códigos de salida: 0 si todos son válidos, 1 si algún programa es inválido,
+// 2 si hubo un error de uso o algún archivo no se pudo leer.
+public class BatchValidator {
+    public static final int EXIT_VALID = 0;
+    public static final int EXIT_INVALID = 1;
+    public static final int EXIT_ERROR = 2;
+
+    public record FileResult(String file, String status, long bytes, int tokens, long nanos, boolean cached,
+                             List<Diagnostic> diagnostics) {
+    }
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String directoryGlob = "*.sc";
+    private String outputFile;
+    private boolean quiet = false;
+    private String cacheDirectory;
+    private long cacheMegabytes = 64;
+    private int maxErrors = 0; // 0 = todos los errores
+    private boolean mapped = false; // --mmap: ByteLexer sobre el archivo mapeado
+    private AnalysisCache cache;
+    private final List<String> inputs = new ArrayList<>();
+
+    public static int run(String[] args) {
+        BatchValidator validator = new BatchValidator();
+        try {
+            if (!validator.parseArguments(args)) {
+                printUsage(System.out);
+                return EXIT_VALID;
+            }
+            return validator.validateAll();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            printUsage(System.err);
+            return EXIT_ERROR;
+        } catch (IOException e) {
+            System.err.println("Error de E/S: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    // Devuelve false si solo se pidió la ayuda.
+    private boolean parseArguments(String[] args) {
+        boolean options = true;
+        for (String arg : args) {
+            if (options && arg.equals("--")) {
+                options = false;
+            } else if (options && (arg.equals("--help") || arg.equals("-h"))) {
+                return false;
+            } else if (options && arg.startsWith("--threads=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    throw new IllegalArgumentException("--threads debe ser un entero positivo: " + arg);
+                }
+            } else if (options && arg.startsWith("--glob=")) {
+                directoryGlob = arg.substring("--glob=".length());
+            } else if (options && arg.startsWith("--output=")) {
+                outputFile = arg.substring("--output=".length());
+            } else if (options && arg.startsWith("--cache=")) {
+                cacheDirectory = arg.substring("--cache=".length());
+            } else if (options && arg.startsWith("--cache-size=")) {
+                try {
+                    cacheMegabytes = Long.parseLong(arg.substring("--cache-size=".length()));
+                } catch (NumberFormatException e) {
+                    cacheMegabytes = 0;
+                }
+                if (cacheMegabytes < 1) {
+                    throw new IllegalArgumentException("--cache-size debe ser un entero positivo: " + arg);
+                }
+            } else if (options && arg.startsWith("--max-errors=")) {
+                try {
+                    maxErrors = Integer.parseInt(arg.substring("--max-errors=".length()));
+                } catch (NumberFormatException e) {
+                    maxErrors = 0;
+                }
+                if (maxErrors < 1) {
+                    throw new IllegalArgumentException("--max-errors debe ser un entero positivo: " + arg);
+                }
+            } else if (options && arg.equals("--fail-fast")) {
+                maxErrors = 1;
+            } else if (options && arg.equals("--mmap")) {
+                mapped = true;
+            } else if (options && arg.equals("--quiet")) {
+                quiet = true;
+            } else if (options && arg.startsWith("--")) {
+                throw new IllegalArgumentException("Opción desconocida: " + arg);
+            } else {
+                inputs.add(arg);
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No se indicaron archivos.");
+        }
+        if (mapped && cacheDirectory != null) {
+            // La caché guarda offsets en caracteres y --mmap los da en bytes
+            throw new IllegalArgumentException("--mmap no se puede combinar con --cache.");
+        }
+        return true;
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Uso: simplecalc [opciones] ARCHIVO|DIRECTORIO|GLOB...");
+        out.println("  --threads=N      hilos de análisis (por defecto, uno por núcleo)");
+        out.println("  --glob=PATRÓN    archivos que se toman de los directorios (por defecto *.sc)");
+        out.println("  --output=ARCHIVO resultados JSON en un archivo en lugar de la salida estándar");
+        out.println("  --cache=DIR      reutiliza resultados de corridas anteriores");
+        out.println("  --cache-size=MB  tamaño máximo de la caché (por defecto 64)");
+        out.println("  --max-errors=N   deja de analizar un archivo en su error N (por defecto, todos)");
+        out.println("  --fail-fast      igual que --max-errors=1: solo interesa si es válido");
+        out.println("  --mmap           mapea los archivos en memoria y los escanea sin decodificarlos");
+        out.println("                   (para archivos muy grandes; offsets y columnas en bytes)");
+        out.println("  --quiet          sin el resumen final");
+        out.println("Sin argumentos se abre el IDE; con --generate se genera un programa de prueba,");
+        out.println("con --eval se ejecuta un programa sobre un CSV de datos y con --serve se atienden");
+        out.println("validaciones por un socket local.");
+    }
+
+    private int validateAll() throws IOException {
+        long start = System.nanoTime();
+        if (cacheDirectory != null) {
+            cache = new AnalysisCache(Path.of(cacheDirectory), cacheMegabytes * 1024 * 1024);
+        }
+        int valid = 0;
+        int invalid = 0;
+        int failed = 0;
+        long totalBytes = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Writer out = (outputFile != null)
+                ? Files.newBufferedWriter(Path.of(outputFile), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            // Se envían todos y se escriben en el orden de entrada a medida que terminan
+            List<Future<FileResult>> pending = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            for (String input : inputs) {
+                files.clear();
+                expand(input, files);
+                if (files.isEmpty()) {
+                    pending.add(CompletableFuture.completedFuture(new FileResult(input, "error", 0, 0, 0, false,
+                            List.of(Diagnostic.internal("No existe o no coincide con ningún archivo.")))));
+                }
+                for (Path file : files) {
+                    pending.add(pool.submit(() -> validate(file)));
+                }
+            }
+            for (Future<FileResult> future : pending) {
+                FileResult result = future.get();
+                writeJson(out, result);
+                totalBytes += result.bytes();
+                switch (result.status()) {
+                    case "valid":
+                        valid++;
+                        break;
+                    case "invalid":
+                        invalid++;
+                        break;
+                    default:
+                        failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Validación interrumpida.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fallo inesperado al validar.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            out.flush();
+            if (outputFile != null) {
+                out.close();
+            }
+        }
+
+        if (!quiet) {
+            double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+            int total = valid + invalid + failed;
+            System.err.printf("%d archivos (%d válidos, %d inválidos, %d con error) en %.3f s con %d hilos: "
+                            + "%.1f archivos/s, %.2f MB/s%n",
+                    total, valid, invalid, failed, seconds, threads,
+                    total / seconds, totalBytes / 1e6 / seconds);
+            if (cache != null) {
+                System.err.printf("Caché %s: %d aciertos, %d fallos, %d desalojos, %.2f MB%n",
+                        cacheDirectory, cache.getHits(), cache.getMisses(), cache.getEvictions(),
+                        cache.getSizeBytes() / 1e6);
+            }
+        }
+        if (failed > 0) {
+            return EXIT_ERROR;
+        }
+        return (invalid > 0) ? EXIT_INVALID : EXIT_VALID;
+    }
+
+    // Agrega a 'files' lo que nombra 'input': un archivo, un directorio (se
+    // recorre buscando --glob) o un glob como "pruebas/**/*.sc".
+    private void expand(String input, List<Path> files) throws IOException {
+        if (!isGlob(input)) {
+            Path path = Path.of(input);
+            if (Files.isDirectory(path)) {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + directoryGlob);
+                collect(path, file -> matcher.matches(file.getFileName()), files);
+            } else if (Files.exists(path)) {
+                files.add(path);
+            }
+            return;
+        }
+        // El recorrido empieza en la parte del patrón que no tiene comodines
+        String separator = FileSystems.getDefault().getSeparator();
+        String[] parts = input.split(Pattern.quote(separator), -1);
+        StringBuilder base = new StringBuilder();
+        for (int i = 0; i < parts.length - 1 && !isGlob(parts[i]); i++) {
+            base.append(parts[i]).append(separator);
+        }
+        Path root = Path.of(base.toString());
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+        collect(root, matcher::matches, files);
+    }
+
+    private static boolean isGlob(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            switch (text.charAt(i)) {
+                case '*':
+                case '?':
+                case '[':
+                case '{':
+                    return true;
+                default:
+            }
+        }
+        return false;
+    }
+
+    private static void collect(Path root, Predicate<Path> filter, List<Path> files)
+            throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            // Orden estable entre corridas, independiente del sistema de archivos
+            walk.filter(Files::isRegularFile).filter(filter).sorted().forEach(files::add);
+        }
+    }
+
+    private FileResult validate(Path file) {
+        long start = System.nanoTime();
+        if (mapped) {
+            return validateMapped(file, start);
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return new FileResult(file.toString(), "error", 0, 0, System.nanoTime() - start, false,
+                    List.of(Diagnostic.internal("No se pudo leer el archivo: " + e.getMessage())));
+        }
+        try {
+            String key = null;
+            Analysis analysis = null;
+            if (cache != null) {
+                key = AnalysisCache.key(bytes, maxErrors);
+                analysis = cache.get(key);
+            }
+            boolean cached = analysis != null;
+            if (!cached) {
+                analysis = Analysis.of(new String(bytes, StandardCharsets.UTF_8), maxErrors);
+                if (cache != null) {
+                    cache.put(key, analysis);
+                }
+            }
+            return new FileResult(file.toString(), analysis.valid() ? "valid" : "invalid", bytes.length,
+                    analysis.tokenCount(), System.nanoTime() - start, cached, analysis.diagnostics());
+        } catch (RuntimeException | StackOverflowError e) {
+            // Un archivo que rompe el análisis no debe detener el lote
+            return new FileResult(file.toString(), "error", bytes.length, 0, System.nanoTime() - start, false,
+                    List.of(Diagnostic.internal("Error interno del analizador: " + e)));
+        }
+    }
+
+    // --mmap: sin leer el archivo a un byte[] ni decodificarlo (Analysis.ofFile).
+    private FileResult validateMapped(Path file, long start) {
+        long size;
+        Analysis analysis;
+        try {
+            size = Files.size(file);
+            analysis = Analysis.ofFile(file, maxErrors);
+        } catch (IOException e) {
+            return new FileResult(file.toString(), "error", 0, 0, System.nanoTime() - start, false,
+                    List.of(Diagnostic.internal("No se pudo leer el archivo: " + e.getMessage())));
+        } catch (RuntimeException | StackOverflowError e) {
+            return new FileResult(file.toString(), "error", 0, 0, System.nanoTime() - start, false,
+                    List.of(Diagnostic.internal("Error interno del analizador: " + e)));
+        }
+        return new FileResult(file.toString(), analysis.valid() ? "valid" : "invalid", size,
+                analysis.tokenCount(), System.nanoTime() - start, false, analysis.diagnostics());
+    }
+
+    private static void writeJson(Writer out, FileResult result) throws IOException {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"file\":");
+        appendJsonString(sb, result.file());
+        sb.append(",\"status\":\"").append(result.status()).append('"');
+        sb.append(",\"bytes\":").append(result.bytes());
+        sb.append(",\"tokens\":").append(result.tokens());
+        sb.append(",\"millis\":").append(String.format(Locale.ROOT, "%.3f", result.nanos() / 1e6));
+        sb.append(",\"cached\":").append(result.cached());
+        sb.append(",\"diagnostics\":[");
+        for (int i = 0; i < result.diagnostics().size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendJsonDiagnostic(sb, result.diagnostics().get(i));
+        }
+        sb.append("]}\n");
+        out.write(sb.toString());
+    }
+
+    static void appendJsonDiagnostic(StringBuilder sb, Diagnostic diagnostic) {
+        sb.append("{\"kind\":\"").append(diagnostic.kind()).append('"');
+        sb.append(",\"key\":\"").append(diagnostic.key()).append('"');
+        sb.append(",\"line\":").append(diagnostic.line());
+        sb.append(",\"column\":").append(diagnostic.column());
+        sb.append(",\"offset\":").append(diagnostic.offset());
+        sb.append(",\"length\":").append(diagnostic.length());
+        sb.append(",\"message\":");
+        appendJsonString(sb, diagnostic.format());
+        sb.append('}');
+    }
+
+    static void appendJsonString(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,294 @@
+// ByteLexer.java
+package simplecalc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Lexer sobre los bytes UTF-8 del archivo, sin decodificarlo a un String: el
+// archivo se mapea en memoria y se escanea directo del MappedByteBuffer. Fuera
+// de las cadenas la gramática léxica es ASCII, así que casi todo se decide
+// mirando un byte; dentro de una cadena los bytes solo se saltean.
+//
+// Produce el mismo TokenBuffer que Lexer.scanTokenBuffer() (mismos tipos,
+// lexemas, literales, líneas y errores), con una diferencia: offsets, largos y
+// columnas se cuentan en bytes. En un archivo ASCII son idénticos. Un carácter
+// no ASCII fuera de una cadena es un único token ERROR con toda su secuencia
+// UTF-8 (el Lexer da dos si el carácter no entra en un char).
+//
+// Los lexemas y los literales se decodifican recién cuando se piden, desde la
+// vista ByteText que queda como getSource() del TokenBuffer.
+public class ByteLexer {
+    private final ByteText source;
+    private final int length;
+    private TokenBuffer tokenBuffer;
+    private final LineIndex lineIndex = new LineIndex();
+    private int maxErrors = 0;  // 0 = sin límite
+    private int errorCount = 0;
+    private int start = 0;
+    private int current = 0;
+    private int line = 1;
+
+    // 'bytes' de su posición a su límite; no se modifica ni se copia.
+    public ByteLexer(ByteBuffer bytes) {
+        this.source = new ByteText(bytes.slice(), 0, bytes.remaining());
+        this.length = source.length();
+    }
+
+    // Mapea el archivo en memoria (hasta 2 GiB: los offsets del TokenBuffer son int).
+    public static ByteLexer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("El archivo es demasiado grande para mapearlo (más de 2 GiB): " + file);
+            }
+            // El mapeo sigue siendo válido después de cerrar el canal
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new ByteLexer(bytes);
+        }
+    }
+
+    // Como Lexer.setMaxErrors().
+    public void setMaxErrors(int maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("La cantidad máxima de errores no puede ser negativa: " + maxErrors);
+        }
+        this.maxErrors = maxErrors;
+    }
+
+    public TokenBuffer scanTokenBuffer() {
+        tokenBuffer = new TokenBuffer(source, lineIndex, Math.max(16, length / 4));
+        while (current < length && !errorLimitReached()) {
+            start = current;
+            scanToken();
+        }
+        tokenBuffer.add(Token.TokenType.EOF, current, 0, line, 0);
+        TokenBuffer result = tokenBuffer;
+        tokenBuffer = null;
+        return result;
+    }
+
+    public LineIndex getLineIndex() {
+        return lineIndex;
+    }
+
+    // Misma gramática que Lexer.scanToken(), byte a byte.
+    private void scanToken() {
+        int c = advance();
+        switch (c) {
+            case '(': add(Token.TokenType.PAREN_IZQ); break;
+            case ')': add(Token.TokenType.PAREN_DER); break;
+            case '{': add(Token.TokenType.LLAVE_IZQ); break;
+            case '}': add(Token.TokenType.LLAVE_DER); break;
+            case '+': add(Token.TokenType.OP_SUMA); break;
+            case '-': add(Token.TokenType.OP_RESTA); break;
+            case '*': add(Token.TokenType.OP_MULT); break;
+            case '.': add(Token.TokenType.PUNTO); break;
+            case '/': add(Token.TokenType.OP_DIV); break;
+            case '=':
+                add(match('=') ? Token.TokenType.OP_IGUAL_IGUAL : Token.TokenType.ASIGNACION);
+                break;
+            case '<':
+                if (match('=')) {
+                    addError(Diagnostic.Key.RELATIONAL_NOT_ALLOWED, "<");
+                } else {
+                    add(Token.TokenType.OP_MENOR);
+                }
+                break;
+            case '>':
+                if (match('=')) {
+                    addError(Diagnostic.Key.RELATIONAL_NOT_ALLOWED, ">");
+                } else {
+                    add(Token.TokenType.OP_MAYOR);
+                }
+                break;
+            case ' ':
+            case '\r':
+            case '\t':
+                break;
+            case '\n':
+                add(Token.TokenType.EOL);
+                line++;
+                lineIndex.addLineStart(current);
+                break;
+            case '"':
+                string();
+                break;
+            default:
+                if (c >= '0' && c <= '9') {
+                    number();
+                } else if (c >= 'A' && c <= 'Z') {
+                    identifier();
+                } else {
+                    if (c >= 0x80) {
+                        skipContinuationBytes(); // Un carácter no ASCII es un solo token
+                    }
+                    addError(Diagnostic.Key.UNEXPECTED_CHARACTER, null);
+                }
+                break;
+        }
+    }
+
+    private void identifier() {
+        while (current < length && isAlphaNumeric(peek())) {
+            current++;
+        }
+        Token.TokenType type = keywordType();
+        add((type != null) ? type : Token.TokenType.ID);
+    }
+
+    // Las cuatro palabras reservadas, comparadas contra los bytes sin crear un String.
+    private Token.TokenType keywordType() {
+        switch (current - start) {
+            case 2:
+                return matches("SI") ? Token.TokenType.SI_KEYWORD : null;
+            case 6:
+                return matches("SALIDA") ? Token.TokenType.SALIDA_KEYWORD : null;
+            case 7:
+                return matches("ENTRADA") ? Token.TokenType.ENTRADA_KEYWORD : null;
+            case 9:
+                return matches("OPERACION") ? Token.TokenType.OPERACION_KEYWORD : null;
+            default:
+                return null;
+        }
+    }
+
+    private boolean matches(String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (source.byteAt(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void number() {
+        while (current < length && isDigit(peek())) {
+            current++;
+        }
+        long value = 0;
+        for (int i = start; i < current && value <= Integer.MAX_VALUE; i++) {
+            value = value * 10 + (source.byteAt(i) - '0');
+        }
+        if (value <= Integer.MAX_VALUE) {
+            tokenBuffer.add(Token.TokenType.NUMERO_ENTERO, start, current - start, line, (int) value);
+        } else {
+            addError(Diagnostic.Key.INVALID_NUMBER, null);
+        }
+    }
+
+    // Los bytes de la cadena no se interpretan: solo importan '"', '\n' y '\r'.
+    private void string() {
+        while (current < length && peek() != '"') {
+            int b = peek();
+            if (b == '\n' || b == '\r') {
+                addError(Diagnostic.Key.NEWLINE_IN_STRING, null);
+                return; // El salto de línea se escanea como EOL
+            }
+            current++;
+        }
+        if (current >= length) {
+            addError(Diagnostic.Key.UNTERMINATED_STRING, null);
+            return;
+        }
+        current++; // Comilla de cierre
+        add(Token.TokenType.CADENA_LITERAL);
+    }
+
+    // Bytes de continuación (10xxxxxx) del carácter que empieza en 'start'.
+    private void skipContinuationBytes() {
+        while (current < length && (peek() & 0xC0) == 0x80) {
+            current++;
+        }
+    }
+
+    private int advance() {
+        return source.byteAt(current++);
+    }
+
+    private boolean match(char expected) {
+        if (current >= length || peek() != expected) {
+            return false;
+        }
+        current++;
+        return true;
+    }
+
+    private int peek() {
+        return source.byteAt(current);
+    }
+
+    private static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isAlphaNumeric(int b) { // Mayúsculas y dígitos, como en Lexer
+        return (b >= 'A' && b <= 'Z') || isDigit(b);
+    }
+
+    private void add(Token.TokenType type) {
+        tokenBuffer.add(type, start, current - start, line, 0);
+    }
+
+    private void addError(Diagnostic.Key key, Object arg) {
+        errorCount++;
+        tokenBuffer.addError(start, current - start, line, key, arg);
+    }
+
+    private boolean errorLimitReached() {
+        return maxErrors > 0 && errorCount >= maxErrors;
+    }
+
+    // Bytes UTF-8 vistos como CharSequence indexada por byte: charAt() da el byte
+    // (los ASCII son el mismo carácter), y toString() decodifica UTF-8. Es lo que
+    // usa el TokenBuffer para los lexemas, así que un lexema con caracteres no
+    // ASCII sale igual que con Lexer.
+    static final class ByteText implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        ByteText(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        // Byte sin signo (0 a 255) en 'index'.
+        int byteAt(int index) {
+            return bytes.get(offset + index) & 0xFF;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Índice fuera de rango: " + index);
+            }
+            return (char) byteAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException("Rango inválido: [" + from + ", " + to + ")");
+            }
+            return new ByteText(bytes, offset + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            byte[] text = new byte[length];
+            bytes.get(offset, text);
+            return new String(text, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,773 @@
+// ColumnarEvaluator.java
+package simplecalc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Ejecución por columnas: el mismo programa sobre muchas filas de datos, con una
+// columna int[] por cada sentencia ENTRADA (la k-ésima ENTRADA lee la columna k)
+// y una columna de resultados por cada sentencia SALIDA.
+//
+// Se ejecuta el VmProgram del programa, pero cada instrucción se aplica a un
+// bloque de BLOCK_SIZE filas a la vez: los registros son arreglos y cada
+// instrucción es un bucle simple sobre ellos, que el JIT puede vectorizar. Como
+// la acción de un SI es una sola sentencia, el salto de un SI se convierte en
+// una máscara de filas que vale hasta el destino del salto: ahí las asignaciones
+// a variables solo cambian las filas activas y una SALIDA marca en qué filas
+// hubo valor. Los bloques se reparten en un ForkJoinPool.
+//
+// El resultado es el mismo que ejecutar VirtualMachine fila por fila. Una
+// división entre cero detiene todo y se reporta la primera fila en que ocurre.
+// Una instancia no debe usarse desde varios hilos a la vez.
+public class ColumnarEvaluator {
+    public static final int BLOCK_SIZE = 1024;               // Filas por bloque
+    public static final int DEFAULT_ROWS_PER_TASK = 1 << 16; // Filas por tarea del pool
+
+    private final VmProgram program;
+    private final int variableCount;
+    private final ForkJoinPool pool;
+    private final int rowsPerTask;
+
+    private final List<String> inputNames = new ArrayList<>();
+    private final List<String> outputNames = new ArrayList<>();
+    private final List<String> outputTexts = new ArrayList<>();    // null si la SALIDA no es una cadena
+    private final List<Boolean> outputConditional = new ArrayList<>();
+    // Para cada INPUT / EMIT / EMIT_TEXT del código, su columna de entrada o de salida
+    private final int[] columnAt;
+
+    // Primer error de ejecución (la fila más baja); protegidos por 'this'
+    private int errorRow;
+    private int errorPosition;
+
+    public ColumnarEvaluator(Ast.Program program) {
+        this(program, ForkJoinPool.commonPool(), DEFAULT_ROWS_PER_TASK);
+    }
+
+    public ColumnarEvaluator(Ast.Program program, ForkJoinPool pool, int rowsPerTask) {
+        if (rowsPerTask < 1) {
+            throw new IllegalArgumentException("La cantidad de filas por tarea debe ser positiva: " + rowsPerTask);
+        }
+        this.program = VmProgram.lower(program);
+        this.variableCount = program.variables().size();
+        this.pool = pool;
+        this.rowsPerTask = Math.max(rowsPerTask, BLOCK_SIZE); // Una tarea procesa al menos un bloque
+        collectOutputNames(program);
+
+        int[] code = this.program.code;
+        columnAt = new int[code.length];
+        int maskEnd = -1;
+        for (int pc = 0; code[pc] != VmProgram.HALT; pc += instructionLength(code[pc])) {
+            switch (code[pc]) {
+                case VmProgram.INPUT:
+                    columnAt[pc] = inputNames.size();
+                    inputNames.add(this.program.strings[code[pc + 2]]);
+                    break;
+                case VmProgram.EMIT:
+                case VmProgram.EMIT_TEXT:
+                    columnAt[pc] = outputConditional.size();
+                    outputConditional.add(pc < maskEnd);
+                    break;
+                case VmProgram.JGE:
+                case VmProgram.JLE:
+                case VmProgram.JNE:
+                    maskEnd = code[pc + 3];
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Nombre de cada columna de salida: la variable si la SALIDA es de un ID,
+    // si no "SALIDA" y su número.
+    private void collectOutputNames(Ast.Program program) {
+        for (Ast.Statement statement : program.statements()) {
+            if (statement instanceof Ast.If conditional) {
+                statement = conditional.action();
+            }
+            if (statement instanceof Ast.Output output) {
+                Ast.OutputValue value = output.value();
+                outputNames.add((value instanceof Ast.Var var) ? var.name() : "SALIDA" + (outputNames.size() + 1));
+                outputTexts.add((value instanceof Ast.Text text) ? text.value() : null);
+            }
+        }
+    }
+
+    private static int instructionLength(int opcode) {
+        switch (opcode) {
+            case VmProgram.EMIT:
+            case VmProgram.EMIT_TEXT:
+                return 2;
+            case VmProgram.CONST:
+            case VmProgram.MOVE:
+            case VmProgram.INPUT:
+                return 3;
+            case VmProgram.ADD:
+            case VmProgram.SUB:
+            case VmProgram.MUL:
+            case VmProgram.JGE:
+            case VmProgram.JLE:
+            case VmProgram.JNE:
+                return 4;
+            case VmProgram.DIV:
+                return 5;
+            default:
+                return 1;
+        }
+    }
+
+    // Variables de las sentencias ENTRADA, en el orden de las columnas de entrada.
+    public List<String> getInputNames() {
+        return inputNames;
+    }
+
+    public List<String> getOutputNames() {
+        return outputNames;
+    }
+
+    // ---- Resultado ----
+
+    // Una columna de salida. 'values' es null si la SALIDA es una cadena ('text');
+    // 'present' es null si la SALIDA no está dentro de un SI (hay valor en todas
+    // las filas). En las filas sin valor, 'values' tiene 0.
+    public record Column(String name, int[] values, String text, boolean[] present) {
+        public boolean isPresent(int row) {
+            return present == null || present[row];
+        }
+
+        // Valor de la fila como lo mostraría la SALIDA; "" si no hubo.
+        public String format(int row) {
+            if (!isPresent(row)) {
+                return "";
+            }
+            return (values != null) ? Integer.toString(values[row]) : text;
+        }
+    }
+
+    public record Result(int rowCount, List<Column> outputs) {
+        // CSV con una línea de encabezado (los nombres de las columnas) y una por fila.
+        public void writeCsv(Writer out) throws IOException {
+            StringBuilder line = new StringBuilder(256);
+            for (int c = 0; c < outputs.size(); c++) {
+                if (c > 0) {
+                    line.append(',');
+                }
+                appendCsvField(line, outputs.get(c).name());
+            }
+            out.write(line.append('\n').toString());
+            for (int row = 0; row < rowCount; row++) {
+                line.setLength(0);
+                for (int c = 0; c < outputs.size(); c++) {
+                    if (c > 0) {
+                        line.append(',');
+                    }
+                    Column column = outputs.get(c);
+                    if (!column.isPresent(row)) {
+                        continue;
+                    }
+                    if (column.values() != null) {
+                        line.append(column.values()[row]);
+                    } else {
+                        appendCsvField(line, column.text());
+                    }
+                }
+                out.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    private static void appendCsvField(StringBuilder sb, String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            sb.append(text);
+            return;
+        }
+        sb.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    // ---- Ejecución ----
+
+    // Una fila por posición de las columnas, que deben tener todas el mismo largo.
+    public Result evaluate(int[]... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Sin columnas de entrada no se sabe cuántas filas hay; use evaluate(filas).");
+        }
+        return evaluate(columns[0].length, columns);
+    }
+
+    // 'rowCount' hace falta solo para un programa sin ENTRADA; si no, es el largo de las columnas.
+    public Result evaluate(int rowCount, int[]... columns) {
+        if (columns.length != inputNames.size()) {
+            throw new IllegalArgumentException("El programa tiene " + inputNames.size()
+                    + " sentencias ENTRADA y se recibieron " + columns.length + " columnas.");
+        }
+        for (int k = 0; k < columns.length; k++) {
+            if (columns[k].length != rowCount) {
+                throw new IllegalArgumentException("La columna " + (k + 1) + " (" + inputNames.get(k) + ") tiene "
+                        + columns[k].length + " filas y se esperaban " + rowCount + ".");
+            }
+        }
+
+        int[][] outputValues = new int[outputNames.size()][];
+        boolean[][] outputPresent = new boolean[outputNames.size()][];
+        for (int k = 0; k < outputNames.size(); k++) {
+            outputValues[k] = (outputTexts.get(k) == null) ? new int[rowCount] : null;
+            outputPresent[k] = outputConditional.get(k) ? new boolean[rowCount] : null;
+        }
+
+        synchronized (this) {
+            errorRow = Integer.MAX_VALUE;
+        }
+        EvalTask task = new EvalTask(columns, outputValues, outputPresent, 0, rowCount);
+        if (rowCount <= rowsPerTask || pool.getParallelism() < 2) {
+            task.evaluateRange(); // Sin tareas: no hay nada que repartir
+        } else {
+            pool.invoke(task);
+        }
+        synchronized (this) {
+            if (errorRow != Integer.MAX_VALUE) {
+                EvaluationError error = Evaluator.divisionByZero(program.positions[errorPosition],
+                        program.positions[errorPosition + 1]);
+                throw new EvaluationError("Fila " + (errorRow + 1) + ": " + error.getMessage());
+            }
+        }
+
+        List<Column> outputs = new ArrayList<>(outputNames.size());
+        for (int k = 0; k < outputNames.size(); k++) {
+            outputs.add(new Column(outputNames.get(k), outputValues[k], outputTexts.get(k), outputPresent[k]));
+        }
+        return new Result(rowCount, outputs);
+    }
+
+    private synchronized void recordError(int row, int position) {
+        if (row < errorRow) {
+            errorRow = row;
+            errorPosition = position;
+        }
+    }
+
+    private synchronized boolean failedBefore(int row) {
+        return errorRow < row;
+    }
+
+    // Divide [from, to) a la mitad (en un múltiplo de BLOCK_SIZE) hasta que
+    // quedan a lo sumo rowsPerTask filas.
+    private final class EvalTask extends RecursiveAction {
+        private final int[][] columns;
+        private final int[][] outputValues;
+        private final boolean[][] outputPresent;
+        private final int from;
+        private final int to;
+
+        EvalTask(int[][] columns, int[][] outputValues, boolean[][] outputPresent, int from, int to) {
+            this.columns = columns;
+            this.outputValues = outputValues;
+            this.outputPresent = outputPresent;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= rowsPerTask) {
+                evaluateRange();
+                return;
+            }
+            int middle = from + ((to - from) / 2 / BLOCK_SIZE) * BLOCK_SIZE;
+            if (middle == from) {
+                middle = from + BLOCK_SIZE;
+            }
+            invokeAll(new EvalTask(columns, outputValues, outputPresent, from, middle),
+                    new EvalTask(columns, outputValues, outputPresent, middle, to));
+        }
+
+        void evaluateRange() {
+            // Registros de un bloque; se reutilizan en todos los bloques del tramo
+            int[][] r = new int[program.registerCount][BLOCK_SIZE];
+            boolean[] mask = new boolean[BLOCK_SIZE];
+            for (int base = from; base < to; base += BLOCK_SIZE) {
+                if (failedBefore(base)) {
+                    return; // Ya hay un error en una fila anterior
+                }
+                if (!evaluateBlock(r, mask, base, Math.min(BLOCK_SIZE, to - base))) {
+                    return;
+                }
+            }
+        }
+
+        // Filas [base, base + n). false si hubo un error de ejecución.
+        private boolean evaluateBlock(int[][] r, boolean[] m, int base, int n) {
+            final int[] code = program.code;
+            for (int[] register : r) {
+                Arrays.fill(register, 0, n, 0);
+            }
+            boolean masked = false;
+            int maskEnd = -1;
+            boolean failed = false;
+            int pc = 0;
+            while (true) {
+                if (pc == maskEnd) {
+                    masked = false;
+                }
+                int op = code[pc];
+                // Con máscara, las escrituras a variables solo cambian las filas activas;
+                // los temporales se pueden calcular en todas.
+                boolean blend = masked && op >= VmProgram.CONST && op <= VmProgram.DIV
+                        && code[pc + 1] < variableCount;
+                switch (op) {
+                    case VmProgram.CONST: {
+                        int[] d = r[code[pc + 1]];
+                        int value = code[pc + 2];
+                        if (blend) {
+                            for (int i = 0; i < n; i++) {
+                                if (m[i]) {
+                                    d[i] = value;
+                                }
+                            }
+                        } else {
+                            Arrays.fill(d, 0, n, value);
+                        }
+                        pc += 3;
+                        break;
+                    }
+                    case VmProgram.MOVE: {
+                        int[] d = r[code[pc + 1]];
+                        int[] s = r[code[pc + 2]];
+                        if (blend) {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = m[i] ? s[i] : d[i];
+                            }
+                        } else {
+                            System.arraycopy(s, 0, d, 0, n);
+                        }
+                        pc += 3;
+                        break;
+                    }
+                    case VmProgram.ADD: {
+                        int[] d = r[code[pc + 1]];
+                        int[] a = r[code[pc + 2]];
+                        int[] b = r[code[pc + 3]];
+                        if (blend) {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = m[i] ? a[i] + b[i] : d[i];
+                            }
+                        } else {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = a[i] + b[i];
+                            }
+                        }
+                        pc += 4;
+                        break;
+                    }
+                    case VmProgram.SUB: {
+                        int[] d = r[code[pc + 1]];
+                        int[] a = r[code[pc + 2]];
+                        int[] b = r[code[pc + 3]];
+                        if (blend) {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = m[i] ? a[i] - b[i] : d[i];
+                            }
+                        } else {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = a[i] - b[i];
+                            }
+                        }
+                        pc += 4;
+                        break;
+                    }
+                    case VmProgram.MUL: {
+                        int[] d = r[code[pc + 1]];
+                        int[] a = r[code[pc + 2]];
+                        int[] b = r[code[pc + 3]];
+                        if (blend) {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = m[i] ? a[i] * b[i] : d[i];
+                            }
+                        } else {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = a[i] * b[i];
+                            }
+                        }
+                        pc += 4;
+                        break;
+                    }
+                    case VmProgram.DIV: {
+                        int[] d = r[code[pc + 1]];
+                        int[] a = r[code[pc + 2]];
+                        int[] b = r[code[pc + 3]];
+                        // Solo cuentan los divisores cero de filas que ejecutan la división.
+                        // Las filas anteriores del bloque todavía pueden fallar en una
+                        // sentencia posterior, así que se siguen ejecutando solo esas.
+                        for (int i = 0; i < n; i++) {
+                            if (b[i] == 0 && (!masked || m[i])) {
+                                recordError(base + i, code[pc + 4]);
+                                failed = true;
+                                n = i;
+                                break;
+                            }
+                        }
+                        if (masked) {
+                            for (int i = 0; i < n; i++) {
+                                if (m[i]) {
+                                    d[i] = a[i] / b[i];
+                                } else if (!blend) {
+                                    d[i] = 0;
+                                }
+                            }
+                        } else {
+                            for (int i = 0; i < n; i++) {
+                                d[i] = a[i] / b[i];
+                            }
+                        }
+                        pc += 5;
+                        break;
+                    }
+                    case VmProgram.INPUT:
+                        System.arraycopy(columns[columnAt[pc]], base, r[code[pc + 1]], 0, n);
+                        pc += 3;
+                        break;
+                    case VmProgram.EMIT: {
+                        int[] s = r[code[pc + 1]];
+                        int[] values = outputValues[columnAt[pc]];
+                        if (masked) {
+                            boolean[] present = outputPresent[columnAt[pc]];
+                            for (int i = 0; i < n; i++) {
+                                if (m[i]) {
+                                    values[base + i] = s[i];
+                                }
+                                present[base + i] = m[i];
+                            }
+                        } else {
+                            System.arraycopy(s, 0, values, base, n);
+                        }
+                        pc += 2;
+                        break;
+                    }
+                    case VmProgram.EMIT_TEXT:
+                        if (masked) {
+                            System.arraycopy(m, 0, outputPresent[columnAt[pc]], base, n);
+                        }
+                        pc += 2;
+                        break;
+                    case VmProgram.JGE: { // El SI se cumple donde no se salta
+                        int[] a = r[code[pc + 1]];
+                        int[] b = r[code[pc + 2]];
+                        for (int i = 0; i < n; i++) {
+                            m[i] = a[i] < b[i];
+                        }
+                        masked = true;
+                        maskEnd = code[pc + 3];
+                        pc += 4;
+                        break;
+                    }
+                    case VmProgram.JLE: {
+                        int[] a = r[code[pc + 1]];
+                        int[] b = r[code[pc + 2]];
+                        for (int i = 0; i < n; i++) {
+                            m[i] = a[i] > b[i];
+                        }
+                        masked = true;
+                        maskEnd = code[pc + 3];
+                        pc += 4;
+                        break;
+                    }
+                    case VmProgram.JNE: {
+                        int[] a = r[code[pc + 1]];
+                        int[] b = r[code[pc + 2]];
+                        for (int i = 0; i < n; i++) {
+                            m[i] = a[i] == b[i];
+                        }
+                        masked = true;
+                        maskEnd = code[pc + 3];
+                        pc += 4;
+                        break;
+                    }
+                    case VmProgram.HALT:
+                        return !failed;
+                    default:
+                        throw new IllegalStateException("Instrucción inválida " + code[pc] + " en pc=" + pc);
+                }
+            }
+        }
+    }
+
+    // ---- CSV ----
+
+    // Lee un CSV de enteros mapeando el archivo en memoria. Si la primera línea
+    // no es numérica es un encabezado: cuando nombra a todas las variables de
+    // ENTRADA (y ninguna se lee dos veces) las columnas se toman por nombre y
+    // las demás se ignoran; si no, por posición, y tiene que haber exactamente
+    // una columna por ENTRADA.
+    public Result evaluateCsv(Path input) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("El archivo CSV es demasiado grande (más de 2 GiB): " + input);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CsvData csv = new CsvReader(data, (int) size).read();
+            return evaluate(csv.rowCount, csv.columns);
+        }
+    }
+
+    private record CsvData(int rowCount, int[][] columns) {
+    }
+
+    private final class CsvReader {
+        private final MappedByteBuffer data;
+        private final int size;
+        private int pos = 0;
+
+        CsvReader(MappedByteBuffer data, int size) {
+            this.data = data;
+            this.size = size;
+        }
+
+        CsvData read() {
+            int[] columnOf = null; // Columna del archivo -> columna de ENTRADA (-1 = se ignora)
+            int fieldCount = inputNames.size();
+            skipBlankLines();
+            if (pos < size && !isNumberStart(data.get(pos))) {
+                List<String> header = readHeader();
+                columnOf = mapHeader(header);
+                fieldCount = header.size();
+            }
+
+            int rowCount = countRows();
+            int[][] columns = new int[inputNames.size()][rowCount];
+            int row = 0;
+            while (row < rowCount) {
+                skipBlankLines();
+                for (int field = 0; field < fieldCount; field++) {
+                    if (field > 0) {
+                        expect(',', row, field);
+                    }
+                    int value = readInt(row, field);
+                    int column = (columnOf != null) ? columnOf[field] : field;
+                    if (column >= 0) {
+                        columns[column][row] = value;
+                    }
+                }
+                endOfLine(row, fieldCount);
+                row++;
+            }
+            return new CsvData(rowCount, columns);
+        }
+
+        private List<String> readHeader() {
+            int lineEnd = pos;
+            while (lineEnd < size && data.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            byte[] bytes = new byte[lineEnd - pos];
+            data.get(pos, bytes);
+            pos = Math.min(lineEnd + 1, size);
+            List<String> header = new ArrayList<>();
+            for (String name : new String(bytes, StandardCharsets.UTF_8).split(",", -1)) {
+                header.add(name.trim());
+            }
+            return header;
+        }
+
+        private int[] mapHeader(List<String> header) {
+            Map<String, Integer> fileColumn = new HashMap<>();
+            for (int f = 0; f < header.size(); f++) {
+                fileColumn.putIfAbsent(header.get(f), f);
+            }
+            boolean byName = new HashSet<>(inputNames).size() == inputNames.size()
+                    && fileColumn.keySet().containsAll(inputNames);
+            if (!byName) {
+                if (header.size() != inputNames.size()) {
+                    throw new IllegalArgumentException("El encabezado tiene " + header.size() + " columnas y el programa "
+                            + inputNames.size() + " sentencias ENTRADA " + inputNames + ".");
+                }
+                return null;
+            }
+            int[] columnOf = new int[header.size()];
+            Arrays.fill(columnOf, -1);
+            for (int k = 0; k < inputNames.size(); k++) {
+                columnOf[fileColumn.get(inputNames.get(k))] = k;
+            }
+            return columnOf;
+        }
+
+        // Líneas con contenido desde 'pos' (una línea vacía o solo con espacios no es una fila).
+        private int countRows() {
+            int rows = 0;
+            boolean content = false;
+            for (int i = pos; i < size; i++) {
+                byte b = data.get(i);
+                if (b == '\n') {
+                    if (content) {
+                        rows++;
+                    }
+                    content = false;
+                } else if (b != '\r' && b != ' ' && b != '\t') {
+                    content = true;
+                }
+            }
+            return content ? rows + 1 : rows;
+        }
+
+        // Hasta el primer carácter con contenido (los espacios antes de un número no molestan).
+        private void skipBlankLines() {
+            while (pos < size) {
+                byte b = data.get(pos);
+                if (b != '\n' && b != '\r' && b != ' ' && b != '\t') {
+                    break;
+                }
+                pos++;
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < size && (data.get(pos) == ' ' || data.get(pos) == '\t')) {
+                pos++;
+            }
+        }
+
+        private int readInt(int row, int field) {
+            skipSpaces();
+            boolean negative = false;
+            if (pos < size && (data.get(pos) == '-' || data.get(pos) == '+')) {
+                negative = data.get(pos) == '-';
+                pos++;
+            }
+            int digitsStart = pos;
+            long value = 0;
+            while (pos < size && data.get(pos) >= '0' && data.get(pos) <= '9') {
+                value = value * 10 + (data.get(pos) - '0');
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw cellError(row, field, "el valor no entra en un entero de 32 bits");
+                }
+                pos++;
+            }
+            if (pos == digitsStart) {
+                throw cellError(row, field, "se esperaba un número entero");
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw cellError(row, field, "el valor no entra en un entero de 32 bits");
+            }
+            skipSpaces();
+            return (int) value;
+        }
+
+        private void expect(char separator, int row, int field) {
+            if (pos >= size || data.get(pos) != separator) {
+                throw cellError(row, field, "faltan columnas (se esperaba '" + separator + "')");
+            }
+            pos++;
+        }
+
+        private void endOfLine(int row, int fieldCount) {
+            if (pos < size && data.get(pos) == '\r') {
+                pos++;
+            }
+            if (pos < size && data.get(pos) != '\n') {
+                throw cellError(row, fieldCount, "sobran columnas (se esperaban " + fieldCount + ")");
+            }
+            pos++;
+        }
+
+        private IllegalArgumentException cellError(int row, int field, String message) {
+            return new IllegalArgumentException("CSV, fila " + (row + 1) + ", columna " + (field + 1) + ": " + message + ".");
+        }
+
+        private boolean isNumberStart(byte b) {
+            return (b >= '0' && b <= '9') || b == '-' || b == '+';
+        }
+    }
+
+    // ---- Línea de comandos ----
+
+    // simplecalc --eval PROGRAMA.sc DATOS.csv [--output=ARCHIVO] [--threads=N]
+    public static int run(String[] args) {
+        String programFile = null;
+        String dataFile = null;
+        String output = null;
+        int threads = 0;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--output=")) {
+                    output = arg.substring("--output=".length());
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("--threads debe ser un entero positivo: " + arg);
+                    }
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Opción desconocida: " + arg);
+                } else if (programFile == null) {
+                    programFile = arg;
+                } else if (dataFile == null) {
+                    dataFile = arg;
+                } else {
+                    throw new IllegalArgumentException("Sobra el argumento: " + arg);
+                }
+            }
+            if (dataFile == null) {
+                throw new IllegalArgumentException("Se necesitan el programa y el archivo de datos.");
+            }
+        } catch (IllegalArgumentException e) { // Incluye NumberFormatException
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Uso: simplecalc --eval PROGRAMA.sc DATOS.csv [--output=ARCHIVO] [--threads=N]");
+            return BatchValidator.EXIT_ERROR;
+        }
+
+        ForkJoinPool pool = (threads > 0) ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+        try {
+            String source = Files.readString(Path.of(programFile), StandardCharsets.UTF_8);
+            TokenBuffer tokens = new Lexer(source).scanTokenBuffer();
+            List<Diagnostic> diagnostics = Analysis.lexicalErrors(tokens);
+            Parser parser = new Parser(tokens);
+            boolean valid = parser.parse() && diagnostics.isEmpty();
+            diagnostics.addAll(parser.getDiagnostics());
+            if (!valid) {
+                for (Diagnostic diagnostic : diagnostics) {
+                    System.err.println(programFile + ": " + diagnostic.format());
+                }
+                return BatchValidator.EXIT_INVALID;
+            }
+            Ast.Program program = new Optimizer().optimize(parser.getProgram()).program();
+
+            long start = System.nanoTime();
+            ColumnarEvaluator evaluator = new ColumnarEvaluator(program, pool, DEFAULT_ROWS_PER_TASK);
+            Result result = evaluator.evaluateCsv(Path.of(dataFile));
+            long evaluated = System.nanoTime();
+            try (Writer out = (output != null)
+                    ? Files.newBufferedWriter(Path.of(output), StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+                result.writeCsv(out);
+            }
+            System.err.printf("%d filas, %d columnas de salida, %.1f ms%n", result.rowCount(),
+                    result.outputs().size(), (evaluated - start) / 1e6);
+            return BatchValidator.EXIT_VALID;
+        } catch (IOException e) {
+            System.err.println("Error de E/S: " + e.getMessage());
+            return BatchValidator.EXIT_ERROR;
+        } catch (IllegalArgumentException | EvaluationError e) {
+            System.err.println("Error: " + e.getMessage());
+            return BatchValidator.EXIT_ERROR;
+        } finally {
+            if (threads > 0) {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+// CompiledProgram.java
+package simplecalc;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+// Programa SimpleCalc compilado por JvmCompiler. Se puede ejecutar muchas veces
+// con distintas entradas; la clase oculta se descarga cuando esta instancia
+// deja de estar referenciada.
+public class CompiledProgram {
+    private final MethodHandle run;
+
+    CompiledProgram(MethodHandle run) {
+        this.run = run;
+    }
+
+    public void run(EntradaSource entradas, SalidaSink salidas) {
+        try {
+            run.invokeExact(entradas, salidas);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t); // run() no declara excepciones verificadas
+        }
+    }
+
+    // Atajo: ejecuta con los valores de ENTRADA dados y devuelve las SALIDA como texto.
+    public List<String> run(int... entradas) {
+        List<String> salidas = new ArrayList<>();
+        run(EntradaSource.of(entradas), SalidaSink.collectingTo(salidas));
+        return salidas;
+    }
+}
@@ -0,0 +1,147 @@
+// Diagnostic.java
+package simplecalc;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Un error o advertencia del análisis con su posición y su mensaje en forma
+// estructurada: la clave del mensaje y sus argumentos. El texto se arma recién
+// cuando alguien lo pide (message() / format()), así que un análisis con miles
+// de errores no paga el formateo de los que nadie muestra.
+//
+// Convención de argumentos: args[0] es siempre el texto del token al que se
+// refiere el diagnóstico ("" si no hay token, p. ej. en el EOF); los demás
+// dependen de la clave.
+public record Diagnostic(Kind kind, Severity severity, int offset, int length, int line, int column,
+                         Key key, Object... args) {
+
+    public enum Severity {
+        ERROR, WARNING
+    }
+
+    // Qué etapa lo produjo; cada tipo tiene su forma de presentar el mensaje
+    // (%1$s = texto del token, %2$s = mensaje de la clave).
+    public enum Kind {
+        LEXICAL("Error Léxico: %1$s (%2$s)"),
+        // Un token ERROR que el Parser salteó dentro del cuerpo
+        SKIPPED_TOKEN("Error léxico: %1$s (%2$s). Se ignora."),
+        SYNTAX("Error en '%1$s': %2$s"),
+        SEMANTIC("Error semántico cerca de '%1$s': %2$s"),
+        INTERNAL("%2$s");
+
+        private final String frame;
+
+        Kind(String frame) {
+            this.frame = frame;
+        }
+    }
+
+    public enum Key {
+        // Léxicos
+        UNEXPECTED_CHARACTER("Caracter inesperado: '%1$s'"),
+        RELATIONAL_NOT_ALLOWED("Operador relacional '%1$s' no está permitido. Use '%2$s' o '=='."),
+        INVALID_NUMBER("Número entero inválido o muy grande: '%1$s'"),
+        NEWLINE_IN_STRING("Salto de línea o retorno de carro no permitido en cadena literal."),
+        UNTERMINATED_STRING("Cadena literal no terminada."),
+        // Sintácticos y otros con el texto ya armado en args[1]
+        MESSAGE("%2$s"),
+        // Semánticos
+        UNINITIALIZED_VARIABLE("La variable '%1$s' se usa antes de asignarle un valor."),
+        CONDITIONALLY_ASSIGNED_VARIABLE("La variable '%1$s' solo recibe valor dentro de un 'SI' y puede no estar inicializada.");
+
+        private final String pattern;
+
+        Key(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public String format(Object... args) {
+            return String.format(pattern, args);
+        }
+    }
+
+    // Diagnóstico sobre un token; 'rest' son los argumentos que siguen al texto del token.
+    public static Diagnostic at(Kind kind, Token token, Key key, Object... rest) {
+        return new Diagnostic(kind, Severity.ERROR, token.offset, token.length, token.line, token.column,
+                key, withSubject(token.lexeme, rest));
+    }
+
+    public static Diagnostic at(Kind kind, TokenBuffer tokens, int index, Key key, Object... rest) {
+        return new Diagnostic(kind, Severity.ERROR, tokens.start(index), tokens.length(index),
+                tokens.line(index), tokens.column(index), key, withSubject(tokens.lexeme(index), rest));
+    }
+
+    private static Object[] withSubject(String subject, Object[] rest) {
+        Object[] args = new Object[rest.length + 1];
+        args[0] = subject;
+        System.arraycopy(rest, 0, args, 1, rest.length);
+        return args;
+    }
+
+    // Un diagnóstico sin posición en el código.
+    public static Diagnostic internal(String message) {
+        return new Diagnostic(Kind.INTERNAL, Severity.ERROR, -1, 0, 0, 0, Key.MESSAGE, "", message);
+    }
+
+    // Vista de solo lectura de 'diagnostics' como mensajes completos; cada
+    // mensaje se arma cuando se lee.
+    public static List<String> formatted(List<Diagnostic> diagnostics) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return diagnostics.get(index).format();
+            }
+
+            @Override
+            public int size() {
+                return diagnostics.size();
+            }
+        };
+    }
+
+    // El mismo diagnóstico presentado como de otro tipo (p. ej. un error léxico
+    // que el Parser saltea).
+    public Diagnostic withKind(Kind newKind) {
+        return new Diagnostic(newKind, severity, offset, length, line, column, key, args);
+    }
+
+    // Texto del token al que se refiere ("" si no hay).
+    public String subject() {
+        return (args.length > 0) ? String.valueOf(args[0]) : "";
+    }
+
+    // Mensaje de la clave, sin posición ni contexto.
+    public String message() {
+        return key.format(args);
+    }
+
+    // Mensaje completo, igual al que se mostraba antes como String:
+    // "[Línea L, Col C] Error en 'X': ..."
+    public String format() {
+        String text;
+        if (kind == Kind.SYNTAX && length == 0 && subject().isEmpty()) {
+            text = "Error al final de la entrada: " + message(); // El EOF no tiene texto
+        } else {
+            text = String.format(kind.frame, subject(), message());
+        }
+        return (line > 0) ? String.format("[Línea %d, Col %d] %s", line, column, text) : text;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Diagnostic d && kind == d.kind && severity == d.severity
+                && offset == d.offset && length == d.length && line == d.line && column == d.column
+                && key == d.key && Arrays.equals(args, d.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * offset + key.hashCode()) + Arrays.hashCode(args);
+    }
+}
@@ -0,0 +1,23 @@
+// EntradaSource.java
+package simplecalc;
+
+// Proveedor de los valores que leen las sentencias ENTRADA durante la ejecución.
+public interface EntradaSource {
+    // Valor para la variable de la sentencia 'ENTRADA variable.' que se está ejecutando.
+    int next(String variable);
+
+    // Entrega los valores en orden, uno por cada ENTRADA ejecutada.
+    static EntradaSource of(int... values) {
+        return new EntradaSource() {
+            private int position = 0;
+
+            @Override
+            public int next(String variable) {
+                if (position >= values.length) {
+                    throw new EvaluationError("No hay más valores de ENTRADA para la variable '" + variable + "'.");
+                }
+                return values[position++];
+            }
+        };
+    }
+}
@@ -0,0 +1,9 @@
+// Archivo: EvaluationError.java
+package simplecalc;
+
+// Error durante la ejecución de un programa válido (p. ej. división entre cero).
+public class EvaluationError extends RuntimeException {
+    public EvaluationError(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,97 @@
+// Evaluator.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Intérprete que recorre el AST. Las variables viven en un int[] indexado por
+// slot y las expresiones se evalúan con aritmética int, sin boxing.
+public class Evaluator {
+    private final Ast.Program program;
+
+    public Evaluator(Ast.Program program) {
+        this.program = program;
+    }
+
+    public void run(EntradaSource entradas, SalidaSink salidas) {
+        int[] variables = new int[program.variables().size()];
+        for (Ast.Statement statement : program.statements()) {
+            execute(statement, variables, entradas, salidas);
+        }
+    }
+
+    // Atajo: ejecuta con los valores de ENTRADA dados y devuelve las SALIDA como texto.
+    public List<String> run(int... entradas) {
+        List<String> salidas = new ArrayList<>();
+        run(EntradaSource.of(entradas), SalidaSink.collectingTo(salidas));
+        return salidas;
+    }
+
+    private static void execute(Ast.Statement statement, int[] variables, EntradaSource entradas, SalidaSink salidas) {
+        if (statement instanceof Ast.Assignment assignment) {
+            variables[assignment.target().slot()] = evaluate(assignment.value(), variables);
+        } else if (statement instanceof Ast.Input input) {
+            variables[input.target().slot()] = entradas.next(input.target().name());
+        } else if (statement instanceof Ast.Output output) {
+            Ast.OutputValue value = output.value();
+            if (value instanceof Ast.Text text) {
+                salidas.emit(text.value());
+            } else {
+                salidas.emit(evaluate((Ast.Expr) value, variables));
+            }
+        } else {
+            Ast.If conditional = (Ast.If) statement;
+            if (test(conditional.condition(), variables)) {
+                execute(conditional.action(), variables, entradas, salidas);
+            }
+        }
+    }
+
+    static boolean test(Ast.Condition condition, int[] variables) {
+        int left = evaluate(condition.left(), variables);
+        int right = evaluate(condition.right(), variables);
+        switch (condition.op()) {
+            case MENOR:
+                return left < right;
+            case MAYOR:
+                return left > right;
+            default:
+                return left == right;
+        }
+    }
+
+    static int evaluate(Ast.Expr expr, int[] variables) {
+        if (expr instanceof Ast.Num num) {
+            return num.value();
+        }
+        if (expr instanceof Ast.Var var) {
+            return variables[var.slot()];
+        }
+        Ast.Binary binary = (Ast.Binary) expr;
+        int left = evaluate(binary.left(), variables);
+        int right = evaluate(binary.right(), variables);
+        switch (binary.op()) {
+            case SUMA:
+                return left + right;
+            case RESTA:
+                return left - right;
+            case MULT:
+                return left * right;
+            default:
+                if (right == 0) {
+                    throw divisionByZero(binary);
+                }
+                return left / right;
+        }
+    }
+
+    static EvaluationError divisionByZero(Ast.Binary division) {
+        return divisionByZero(division.line(), division.column());
+    }
+
+    // También lo invoca el código generado por JvmCompiler.
+    static EvaluationError divisionByZero(int line, int column) {
+        return new EvaluationError(String.format("[Línea %d, Col %d] Error de ejecución: división entre cero.",
+                line, column));
+    }
+}
@@ -0,0 +1,260 @@
+// IncrementalAnalyzer.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Análisis léxico y sintáctico que se actualiza con cada edición del texto en
+// lugar de rehacerse completo. Da los mismos tokens y los mismos errores que
+// Lexer + Parser sobre el texto entero.
+//
+// - Léxico: ningún token cruza un salto de línea (las cadenas no pueden), así que
+//   solo se vuelven a escanear las líneas tocadas por la edición y el resultado
+//   se inserta en el TokenBuffer existente.
+// - Sintaxis: el cuerpo se corta en tramos que terminan en 'PUNTO EOL*'. Cada
+//   tramo se analiza en modo de registro (ParseLog) y su registro se reutiliza
+//   mientras sus tokens no cambien. Después se reaplican todos los registros en
+//   orden para obtener los errores semánticos, que sí dependen del código anterior.
+public class IncrementalAnalyzer {
+    private TokenBuffer tokens;
+    private Parser parser;
+
+    // Cuerpo del último análisis: [bodyStart, bodyEnd), -1 si no se llegó a él.
+    private int bodyStart = -1;
+    private int bodyEnd = -1;
+
+    // Tramos del cuerpo del último análisis (índices de token). El registro es
+    // null si el tramo quedó después de un error que detuvo el análisis.
+    private int segmentCount = 0;
+    private int[] segmentStarts = new int[16];
+    private int[] segmentEnds = new int[16];
+    private boolean[] segmentClosed = new boolean[16]; // Termina en PUNTO
+    private ParseLog[] segmentLogs = new ParseLog[16];
+
+    private final List<Diagnostic> errors = new ArrayList<>();
+    private int relexedLines;
+    private int reparsedSegments;
+
+    public IncrementalAnalyzer() {
+        analyze("");
+    }
+
+    // Analiza el texto completo desde cero.
+    public void analyze(CharSequence text) {
+        Lexer lexer = new Lexer(text);
+        tokens = lexer.scanTokenBuffer();
+        parser = new Parser(tokens);
+        // Los registros anteriores son de otra tabla de símbolos
+        bodyStart = -1;
+        bodyEnd = -1;
+        segmentCount = 0;
+        relexedLines = lexer.getLineIndex().getLineCount();
+        parse(0, tokens.size(), 0);
+    }
+
+    // Aplica una edición: en el texto anterior se quitaron 'removedLength'
+    // caracteres en 'offset' y se insertaron 'insertedLength'; 'newText' es el
+    // texto ya editado.
+    public void update(CharSequence newText, int offset, int removedLength, int insertedLength) {
+        LineIndex lineIndex = tokens.getLineIndex();
+        int firstLine = lineIndex.getLine(offset);
+        int regionStart = lineIndex.getLineStart(firstLine);
+        // El tramo a reescanear llega hasta el fin de la línea donde termina lo insertado
+        int regionEnd = offset + insertedLength;
+        while (regionEnd < newText.length() && newText.charAt(regionEnd) != '\n') {
+            regionEnd++;
+        }
+        if (regionEnd < newText.length()) {
+            regionEnd++; // Incluye el '\n'
+        }
+        int charDelta = insertedLength - removedLength;
+        int oldRegionEnd = regionEnd - charDelta;
+
+        Lexer lexer = new Lexer(newText.subSequence(regionStart, regionEnd));
+        TokenBuffer lexed = lexer.scanTokenBuffer();
+        LineIndex lexedLines = lexer.getLineIndex();
+        int[] newLineStarts = new int[lexedLines.getLineCount() - 1];
+        for (int i = 0; i < newLineStarts.length; i++) {
+            newLineStarts[i] = regionStart + lexedLines.getLineStart(i + 2);
+        }
+        int oldLineBreaks = lineIndex.getLine(oldRegionEnd) - firstLine;
+
+        int from = tokens.firstTokenAtOrAfter(regionStart);
+        int to = tokens.firstTokenAtOrAfter(oldRegionEnd);
+        tokens.replace(newText, from, to, lexed, regionStart, firstLine,
+                charDelta, newLineStarts.length - oldLineBreaks);
+        lineIndex.replaceRange(regionStart, oldRegionEnd, newLineStarts, newLineStarts.length, charDelta);
+
+        relexedLines = lexedLines.getLineCount();
+        int count = lexed.size() - 1;
+        parse(from, from + count, count - (to - from));
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    // Errores sintácticos y semánticos, iguales a los de Parser.getDiagnostics().
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    // Los mismos errores como texto, iguales a los de Parser.getErrors().
+    public List<String> getErrors() {
+        return Diagnostic.formatted(Collections.unmodifiableList(errors));
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    // Líneas escaneadas en el último análisis.
+    public int getRelexedLineCount() {
+        return relexedLines;
+    }
+
+    // Tramos del cuerpo que se analizaron de nuevo en el último análisis.
+    public int getReparsedSegmentCount() {
+        return reparsedSegments;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    // Los tokens [changedFrom, changedTo) son nuevos; los anteriores no cambiaron
+    // y los posteriores solo se desplazaron 'tokenDelta' posiciones.
+    private void parse(int changedFrom, int changedTo, int tokenDelta) {
+        int oldCount = segmentCount;
+        int[] oldStarts = segmentStarts;
+        int[] oldEnds = segmentEnds;
+        boolean[] oldClosed = segmentClosed;
+        ParseLog[] oldLogs = segmentLogs;
+        int oldBodyStart = bodyStart;
+        int oldBodyEnd = bodyEnd;
+        segmentCount = 0;
+        segmentStarts = new int[Math.max(16, oldCount)];
+        segmentEnds = new int[segmentStarts.length];
+        segmentClosed = new boolean[segmentStarts.length];
+        segmentLogs = new ParseLog[segmentStarts.length];
+        errors.clear();
+        // Los registros guardan slots de la tabla del Parser; la misma tabla lleva
+        // el estado de las variables durante la reaplicación.
+        SymbolTable symbols = parser.getSymbolTable();
+        symbols.clearAssigned();
+        reparsedSegments = 0;
+
+        ParseLog header = new ParseLog();
+        bodyStart = parser.parseHeader(header);
+        boolean running = header.replay(tokens, 0, symbols, errors);
+        if (bodyStart < 0) {
+            bodyEnd = -1;
+            return;
+        }
+        // Si el encabezado no cambió, lo anterior a la edición se conserva tal cual
+        boolean sameStart = bodyStart == oldBodyStart && bodyStart <= changedFrom;
+        bodyEnd = findBodyEnd(sameStart, oldBodyEnd, changedFrom, changedTo, tokenDelta);
+
+        // 1. Tramos: los que terminan antes de la edición se copian, los de la zona
+        //    editada se vuelven a cortar y, en cuanto un corte coincide con el inicio
+        //    de un tramo viejo posterior a la edición, el resto se copia desplazado.
+        int next = 0;
+        if (sameStart) {
+            while (next < oldCount && oldClosed[next] && oldEnds[next] < changedFrom) {
+                addSegment(oldStarts[next], oldEnds[next], true, oldLogs[next]);
+                next++;
+            }
+        }
+        int segmentStart = (segmentCount > 0) ? segmentEnds[segmentCount - 1] : bodyStart;
+        boolean sameEnd = oldBodyEnd >= 0 && bodyEnd == oldBodyEnd + tokenDelta;
+        while (segmentStart < bodyEnd) {
+            if (sameEnd && segmentStart >= changedTo) {
+                int oldStart = segmentStart - tokenDelta;
+                while (next < oldCount && oldStarts[next] < oldStart) {
+                    next++;
+                }
+                if (next < oldCount && oldStarts[next] == oldStart) {
+                    for (; next < oldCount; next++) {
+                        // Un tramo sin PUNTO final puede depender del token que lo sigue: siempre se reanaliza
+                        addSegment(oldStarts[next] + tokenDelta, oldEnds[next] + tokenDelta, oldClosed[next],
+                                oldClosed[next] ? oldLogs[next] : null);
+                    }
+                    break;
+                }
+            }
+            int end = segmentStart;
+            while (end < bodyEnd && tokens.type(end) != Token.TokenType.PUNTO) {
+                end++;
+            }
+            boolean closed = end < bodyEnd;
+            if (closed) {
+                end++;
+                while (end < bodyEnd && tokens.type(end) == Token.TokenType.EOL) {
+                    end++;
+                }
+            }
+            addSegment(segmentStart, end, closed, null);
+            segmentStart = end;
+        }
+
+        // 2. Se reaplican los registros en orden, analizando los tramos que no tienen
+        for (int k = 0; k < segmentCount && running; k++) {
+            ParseLog log = segmentLogs[k];
+            if (log == null) {
+                log = new ParseLog();
+                int stop = parser.parseBodyRange(segmentStarts[k], segmentEnds[k], log);
+                if (!log.isAborted() && stop != segmentEnds[k]) {
+                    throw new IllegalStateException("El tramo [" + segmentStarts[k] + ", " + segmentEnds[k]
+                            + ") terminó en el token " + stop + ".");
+                }
+                segmentLogs[k] = log;
+                reparsedSegments++;
+            }
+            running = log.replay(tokens, segmentStarts[k], symbols, errors);
+        }
+
+        if (running) {
+            ParseLog trailer = new ParseLog();
+            parser.parseTrailer(bodyEnd, trailer);
+            trailer.replay(tokens, bodyEnd, symbols, errors);
+        }
+    }
+
+    // Primer '}' o EOF del cuerpo. Con el mismo encabezado solo se busca desde la
+    // edición, y si no aparece en la zona nueva sigue siendo el anterior desplazado.
+    private int findBodyEnd(boolean sameStart, int oldBodyEnd, int changedFrom, int changedTo, int tokenDelta) {
+        int i = bodyStart;
+        if (sameStart && oldBodyEnd >= 0) {
+            if (oldBodyEnd < changedFrom) {
+                return oldBodyEnd;
+            }
+            i = changedFrom;
+        }
+        for (; ; i++) {
+            if (sameStart && oldBodyEnd >= 0 && i >= changedTo && oldBodyEnd + tokenDelta >= i) {
+                return oldBodyEnd + tokenDelta;
+            }
+            Token.TokenType type = tokens.type(i);
+            if (type == Token.TokenType.LLAVE_DER || type == Token.TokenType.EOF) {
+                return i;
+            }
+        }
+    }
+
+    private void addSegment(int start, int end, boolean closed, ParseLog log) {
+        if (segmentCount == segmentStarts.length) {
+            int capacity = segmentCount * 2;
+            segmentStarts = Arrays.copyOf(segmentStarts, capacity);
+            segmentEnds = Arrays.copyOf(segmentEnds, capacity);
+            segmentClosed = Arrays.copyOf(segmentClosed, capacity);
+            segmentLogs = Arrays.copyOf(segmentLogs, capacity);
+        }
+        segmentStarts[segmentCount] = start;
+        segmentEnds[segmentCount] = end;
+        segmentClosed[segmentCount] = closed;
+        segmentLogs[segmentCount] = log;
+        segmentCount++;
+    }
+}
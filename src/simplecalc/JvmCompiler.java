@@ -0,0 +1,454 @@
+// JvmCompiler.java
+package simplecalc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compila un Ast.Program a bytecode JVM: una clase oculta con un único método
+//
+//     static void run(EntradaSource entradas, SalidaSink salidas)
+//
+// donde cada variable es un local int y los operadores OP_* son iadd/isub/imul/idiv.
+// La clase se define con Lookup.defineHiddenClass, así que se descarga junto con
+// el CompiledProgram que la referencia.
+public class JvmCompiler {
+    private static final String CLASS_NAME = "simplecalc/CompiledSimpleCalc";
+    private static final String RUN_DESCRIPTOR = "(Lsimplecalc/EntradaSource;Lsimplecalc/SalidaSink;)V";
+    private static final int FIRST_VARIABLE_LOCAL = 2; // 0 = entradas, 1 = salidas
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    // Opcodes usados
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13;
+    private static final int ILOAD = 0x15, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ISTORE = 0x36, DUP = 0x59;
+    private static final int IADD = 0x60, ISUB = 0x64, IMUL = 0x68, IDIV = 0x6c;
+    private static final int IFNE = 0x9a, IF_ICMPNE = 0xa0, IF_ICMPGE = 0xa2, IF_ICMPLE = 0xa4;
+    private static final int RETURN = 0xb1, INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9, ATHROW = 0xbf, WIDE = 0xc4;
+
+    private JvmCompiler() {
+    }
+
+    // Lanza IllegalArgumentException si el programa excede los límites de un método
+    // JVM (64 KB de código, cadenas muy largas); en ese caso conviene usar el Evaluator.
+    public static CompiledProgram compile(Ast.Program program) {
+        byte[] classBytes = generate(program);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+            MethodHandle run = lookup.findStatic(lookup.lookupClass(), "run",
+                    MethodType.methodType(void.class, EntradaSource.class, SalidaSink.class));
+            return new CompiledProgram(run);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException("No se pudo cargar el programa compilado", e);
+        }
+    }
+
+    // Bytes del archivo .class (expuesto para depurar con javap).
+    static byte[] generate(Ast.Program program) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int runName = pool.utf8("run");
+        int runDescriptor = pool.utf8(RUN_DESCRIPTOR);
+        int codeAttribute = pool.utf8("Code");
+        int stackMapAttribute = pool.utf8("StackMapTable");
+
+        MethodBody body = new MethodBody(pool, program.variables().size());
+        body.emitProgram(program);
+        if (body.code.length > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("El programa es demasiado grande para compilarse a un solo método JVM.");
+        }
+
+        try {
+            // El StackMapTable agrega constantes, así que se genera antes de escribir el pool
+            byte[] stackMap = body.stackMapTable();
+            byte[] code = body.code.toByteArray();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.length + 1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);  // minor
+            out.writeShort(52); // major: Java 8, con StackMapTable
+            pool.writeTo(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(1); // methods
+            out.writeShort(0x0001 | 0x0008); // ACC_PUBLIC | ACC_STATIC
+            out.writeShort(runName);
+            out.writeShort(runDescriptor);
+            out.writeShort(1); // atributos del método: Code
+            int codeAttributeLength = 2 + 2 + 4 + code.length + 2 + 2
+                    + (stackMap != null ? 6 + stackMap.length : 0);
+            out.writeShort(codeAttribute);
+            out.writeInt(codeAttributeLength);
+            out.writeShort(body.maxStack);
+            out.writeShort(body.maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception_table
+            if (stackMap != null) {
+                out.writeShort(1);
+                out.writeShort(stackMapAttribute);
+                out.writeInt(stackMap.length);
+                out.write(stackMap);
+            } else {
+                out.writeShort(0);
+            }
+            out.writeShort(0); // atributos de la clase
+            return bytes.toByteArray();
+        } catch (UTFDataFormatException e) {
+            throw new IllegalArgumentException("Cadena literal demasiado larga para el pool de constantes.", e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream no lanza IOException
+        }
+    }
+
+    // Generación del cuerpo de run(). Todas las variables se inicializan en 0 al
+    // inicio, así que los locales siempre tienen el mismo tipo y cada frame del
+    // StackMapTable solo cambia en la pila.
+    private static final class MethodBody {
+        private final ConstantPool pool;
+        private final int variableCount;
+        private final ByteBuffer code = new ByteBuffer();
+        private final List<int[]> frames = new ArrayList<>(); // {offset, profundidad de pila, sinkDepth}
+        private int stack = 0;
+        private int sinkDepth = -1; // Posición en la pila del SalidaSink durante un SALIDA; -1 si no está
+        int maxStack = 0;
+        final int maxLocals;
+
+        MethodBody(ConstantPool pool, int variableCount) {
+            this.pool = pool;
+            this.variableCount = variableCount;
+            this.maxLocals = FIRST_VARIABLE_LOCAL + variableCount;
+        }
+
+        void emitProgram(Ast.Program program) {
+            for (int slot = 0; slot < variableCount; slot++) {
+                pushInt(0);
+                store(slot);
+            }
+            for (Ast.Statement statement : program.statements()) {
+                emitStatement(statement);
+            }
+            op(RETURN, 0);
+        }
+
+        private void emitStatement(Ast.Statement statement) {
+            if (statement instanceof Ast.Assignment assignment) {
+                emitExpr(assignment.value());
+                store(assignment.target().slot());
+            } else if (statement instanceof Ast.Input input) {
+                op(ALOAD_0, 1);
+                ldc(pool.string(input.target().name()));
+                invokeInterface("simplecalc/EntradaSource", "next", "(Ljava/lang/String;)I", 2, -1);
+                store(input.target().slot());
+            } else if (statement instanceof Ast.Output output) {
+                sinkDepth = stack;
+                op(ALOAD_1, 1);
+                if (output.value() instanceof Ast.Text text) {
+                    ldc(pool.string(text.value()));
+                    invokeInterface("simplecalc/SalidaSink", "emit", "(Ljava/lang/String;)V", 2, -2);
+                } else {
+                    emitExpr((Ast.Expr) output.value());
+                    invokeInterface("simplecalc/SalidaSink", "emit", "(I)V", 2, -2);
+                }
+                sinkDepth = -1;
+            } else {
+                Ast.If conditional = (Ast.If) statement;
+                Ast.Condition condition = conditional.condition();
+                emitExpr(condition.left());
+                emitExpr(condition.right());
+                // Salto cuando la condición es falsa
+                int jump;
+                switch (condition.op()) {
+                    case MENOR:
+                        jump = IF_ICMPGE;
+                        break;
+                    case MAYOR:
+                        jump = IF_ICMPLE;
+                        break;
+                    default:
+                        jump = IF_ICMPNE;
+                        break;
+                }
+                int branch = branch(jump, -2);
+                emitStatement(conditional.action());
+                bindBranch(branch);
+            }
+        }
+
+        private void emitExpr(Ast.Expr expr) {
+            if (expr instanceof Ast.Num num) {
+                pushInt(num.value());
+            } else if (expr instanceof Ast.Var var) {
+                load(var.slot());
+            } else {
+                Ast.Binary binary = (Ast.Binary) expr;
+                emitExpr(binary.left());
+                emitExpr(binary.right());
+                switch (binary.op()) {
+                    case SUMA:
+                        op(IADD, -1);
+                        break;
+                    case RESTA:
+                        op(ISUB, -1);
+                        break;
+                    case MULT:
+                        op(IMUL, -1);
+                        break;
+                    default:
+                        // Mismo error que el Evaluator en lugar de la ArithmeticException de idiv
+                        op(DUP, 1);
+                        int branch = branch(IFNE, -1);
+                        pushInt(binary.line());
+                        pushInt(binary.column());
+                        int method = pool.methodRef("simplecalc/Evaluator", "divisionByZero",
+                                "(II)Lsimplecalc/EvaluationError;", false);
+                        op(INVOKESTATIC, -1);
+                        code.u2(method);
+                        op(ATHROW, -1); // Tras el throw el conteo vuelve a dividendo y divisor
+                        bindBranch(branch);
+                        op(IDIV, -1);
+                        break;
+                }
+            }
+        }
+
+        private void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                code.u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(SIPUSH, 1);
+                code.u2(value);
+            } else {
+                ldc(pool.integer(value));
+            }
+        }
+
+        private void ldc(int index) {
+            if (index <= 0xFF) {
+                op(LDC, 1);
+                code.u1(index);
+            } else {
+                op(LDC_W, 1);
+                code.u2(index);
+            }
+        }
+
+        private void load(int slot) {
+            localOp(ILOAD, slot, 1);
+        }
+
+        private void store(int slot) {
+            localOp(ISTORE, slot, -1);
+        }
+
+        private void localOp(int opcode, int slot, int stackDelta) {
+            int local = FIRST_VARIABLE_LOCAL + slot;
+            if (local <= 0xFF) {
+                op(opcode, stackDelta);
+                code.u1(local);
+            } else {
+                op(WIDE, 0);
+                op(opcode, stackDelta);
+                code.u2(local);
+            }
+        }
+
+        private void invokeInterface(String owner, String name, String descriptor, int argSlots, int stackDelta) {
+            int method = pool.methodRef(owner, name, descriptor, true);
+            op(INVOKEINTERFACE, stackDelta);
+            code.u2(method);
+            code.u1(argSlots);
+            code.u1(0);
+        }
+
+        private void op(int opcode, int stackDelta) {
+            code.u1(opcode);
+            stack += stackDelta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        // Emite un salto con destino pendiente; devuelve la posición del opcode.
+        private int branch(int opcode, int stackDelta) {
+            int position = code.length;
+            op(opcode, stackDelta);
+            code.u2(0);
+            return position;
+        }
+
+        // Resuelve el salto para que caiga en la posición actual y registra su frame.
+        private void bindBranch(int branchPosition) {
+            int offset = code.length - branchPosition;
+            if (offset > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Salto demasiado largo para una instrucción JVM.");
+            }
+            code.patchU2(branchPosition + 1, offset);
+            frames.add(new int[] {code.length, stack, sinkDepth});
+        }
+
+        byte[] stackMapTable() throws IOException {
+            if (frames.isEmpty()) {
+                return null;
+            }
+            int entradaClass = pool.classRef("simplecalc/EntradaSource");
+            int salidaClass = pool.classRef("simplecalc/SalidaSink");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(frames.size());
+            int previousOffset = -1;
+            for (int[] frame : frames) {
+                out.writeByte(255); // full_frame
+                out.writeShort(frame[0] - previousOffset - 1);
+                out.writeShort(maxLocals);
+                out.writeByte(7); // Object
+                out.writeShort(entradaClass);
+                out.writeByte(7);
+                out.writeShort(salidaClass);
+                for (int i = 0; i < variableCount; i++) {
+                    out.writeByte(1); // int
+                }
+                out.writeShort(frame[1]);
+                for (int i = 0; i < frame[1]; i++) {
+                    if (i == frame[2]) {
+                        out.writeByte(7);
+                        out.writeShort(salidaClass);
+                    } else {
+                        out.writeByte(1);
+                    }
+                }
+                previousOffset = frame[0];
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    // Arreglo de bytes que crece y permite corregir saltos ya emitidos.
+    private static final class ByteBuffer {
+        private byte[] data = new byte[256];
+        int length = 0;
+
+        void u1(int value) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            data[length++] = (byte) value;
+        }
+
+        void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        void patchU2(int position, int value) {
+            data[position] = (byte) (value >>> 8);
+            data[position + 1] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+    }
+
+    // Pool de constantes con deduplicación de entradas.
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1; // El índice 0 no se usa
+
+        int utf8(String value) {
+            Integer index = entries.get("U" + value);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(1);
+                out.writeUTF(value);
+            } catch (UTFDataFormatException e) {
+                throw new IllegalArgumentException("Cadena literal demasiado larga para el pool de constantes.", e);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return register("U" + value);
+        }
+
+        int classRef(String internalName) {
+            return entry("C" + internalName, 7, utf8(internalName), -1);
+        }
+
+        int string(String value) {
+            return entry("S" + value, 8, utf8(value), -1);
+        }
+
+        int integer(int value) {
+            Integer index = entries.get("I" + value);
+            if (index != null) {
+                return index;
+            }
+            write(3);
+            writeInt(value);
+            return register("I" + value);
+        }
+
+        int methodRef(String owner, String name, String descriptor, boolean isInterface) {
+            int ownerIndex = classRef(owner);
+            int nameAndType = entry("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor));
+            return entry((isInterface ? "J" : "M") + owner + "." + name + descriptor,
+                    isInterface ? 11 : 10, ownerIndex, nameAndType);
+        }
+
+        private int entry(String key, int tag, int first, int second) {
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            write(tag);
+            writeShort(first);
+            if (second >= 0) {
+                writeShort(second);
+            }
+            return register(key);
+        }
+
+        private int register(String key) {
+            if (count > 0xFFFF) {
+                throw new IllegalArgumentException("Demasiadas constantes para una sola clase.");
+            }
+            entries.put(key, count);
+            return count++;
+        }
+
+        private void write(int value) {
+            bytes.write(value);
+        }
+
+        private void writeShort(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        private void writeInt(int value) {
+            writeShort(value >>> 16);
+            writeShort(value);
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+}
@@ -1,21 +1,47 @@
 // Lexer.java
 package simplecalc;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class Lexer {
-    private final String source;
+public class Lexer implements TokenSource {
+    private CharSequence source; // null cuando se lee desde un Reader; cambia con reset()
     private final List<Token> tokens = new ArrayList<>();
+
+    // Modo streaming (Reader): ventana deslizante sobre la entrada. Solo se
+    // conservan los caracteres desde el inicio del lexema actual en adelante,
+    // así que la memoria queda acotada por el token más largo, no por el archivo.
+    private Reader reader;
+    private char[] window;
+    private int windowBase = 0;   // Offset absoluto de window[0]
+    private int windowEnd = 0;    // Offset absoluto después del último carácter leído
+    private boolean readerExhausted = false;
+
+    private Token pendingToken; // Token producido por el último scanToken(), si hubo
+    private TokenBuffer tokenBuffer; // Destino de los tokens mientras corre scanTokenBuffer()
+    private TokenBuffer lastBuffer;  // El último que devolvió scanTokenBuffer()
+    private TokenBuffer reusableBuffer; // 'lastBuffer' después de un reset(): se vuelve a llenar
+    private Token eofToken;     // Una vez alcanzado el fin, nextToken() lo repite
+    private int maxErrors = 0;  // 0 = sin límite
+    private int errorCount = 0; // Tokens ERROR producidos
     private int start = 0;    // Inicio del lexema actual
     private int current = 0;  // Carácter actual que se está considerando
     private int line = 1;     // Línea actual para reporte de errores
-    // 'column' ya no es un campo de clase, se calcula al añadir token
-    // o se pasa/usa localmente. La columna del token es start - inicioDeLinea + 1.
+    // La columna del token es start - inicioDeLinea + 1; los inicios de línea
+    // se registran en lineIndex a medida que se consumen los '\n'.
+    private final LineIndex lineIndex = new LineIndex();
 
     private static final Map<String, Token.TokenType> keywords;
+    // Copia de 'keywords' en arreglos para compararlas contra el código fuente
+    // sin crear un String por cada identificador.
+    private static final String[] keywordTexts;
+    private static final Token.TokenType[] keywordTypes;
 
     static {
         keywords = new HashMap<>();
@@ -24,25 +50,136 @@ public class Lexer {
         keywords.put("SALIDA", Token.TokenType.SALIDA_KEYWORD);
         keywords.put("SI", Token.TokenType.SI_KEYWORD);
         // "ENTONCES" eliminado
+        keywordTexts = keywords.keySet().toArray(new String[0]);
+        keywordTypes = new Token.TokenType[keywordTexts.length];
+        for (int i = 0; i < keywordTexts.length; i++) {
+            keywordTypes[i] = keywords.get(keywordTexts[i]);
+        }
     }
 
     public Lexer(String source) {
+        this((CharSequence) source);
+    }
+
+    public Lexer(CharSequence source) {
+        this.source = source;
+        this.reader = null;
+    }
+
+    // Lee el programa por partes desde un Reader; pensado para usarse con nextToken().
+    public Lexer(Reader reader) {
+        this.source = null;
+        this.reader = reader;
+        this.window = new char[8192];
+    }
+
+    // Lexer sin código, para guardarlo en un ThreadLocal o un pool y usarlo con reset().
+    public Lexer() {
+        this("");
+    }
+
+    // Prepara el Lexer para escanear otro código reutilizando sus buffers: la
+    // lista de tokens, el LineIndex y el TokenBuffer del último scanTokenBuffer().
+    // Ese TokenBuffer (y las vistas que se hayan sacado de él) pasa a describir
+    // el código nuevo, así que hay que terminar de usarlo antes de llamar a
+    // reset(). La cantidad máxima de errores se conserva.
+    public void reset(CharSequence source) {
         this.source = source;
+        this.reader = null;
+        this.window = null;
+        windowBase = 0;
+        windowEnd = 0;
+        readerExhausted = false;
+        tokens.clear();
+        pendingToken = null;
+        eofToken = null;
+        errorCount = 0;
+        start = 0;
+        current = 0;
+        line = 1;
+        lineIndex.clear();
+        reusableBuffer = lastBuffer;
     }
 
+    // El escaneo termina en el token ERROR número 'maxErrors' (0 = nunca): lo
+    // que sigue es el EOF. Con 1 sirve cuando solo importa saber si el código
+    // es válido.
+    public void setMaxErrors(int maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("La cantidad máxima de errores no puede ser negativa: " + maxErrors);
+        }
+        this.maxErrors = maxErrors;
+    }
+
+    // Con un CharSequence devuelve una vista de scanTokenBuffer(); con un Reader
+    // construye la lista a partir de nextToken().
     public List<Token> scanTokens() {
-        while (!isAtLexerEnd()) { // Usa un isAtEnd específico para el lexer
-            start = current; // Marcar inicio del lexema
-            scanToken();
+        if (source != null) {
+            return scanTokenBuffer().asList();
         }
-        // Añadir token EOF al final
-        // La línea es la 'line' actual (que pudo haber sido incrementada por un \n final)
-        // La columna para EOF puede ser la columna después del último carácter real
-        // o 1 si la última línea estaba vacía o terminó con \n.
-        tokens.add(new Token(Token.TokenType.EOF, "", null, line, calculateColumnForCurrentPos(current)));
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != Token.TokenType.EOF);
         return tokens;
     }
 
+    // Escanea todo el código fuente a un TokenBuffer compacto, sin crear un
+    // objeto Token ni un String por token. Solo disponible sobre un CharSequence.
+    public TokenBuffer scanTokenBuffer() {
+        if (source == null) {
+            throw new IllegalStateException("scanTokenBuffer() requiere el código fuente completo; use nextToken() con un Reader.");
+        }
+        if (reusableBuffer != null) {
+            reusableBuffer.clear(source);
+            tokenBuffer = reusableBuffer;
+            reusableBuffer = null;
+        } else {
+            tokenBuffer = new TokenBuffer(source, lineIndex);
+        }
+        lastBuffer = tokenBuffer;
+        try {
+            while (!isAtLexerEnd() && !errorLimitReached()) {
+                start = current; // Marcar inicio del lexema
+                scanToken();
+            }
+            tokenBuffer.add(Token.TokenType.EOF, current, 0, line, 0);
+            return tokenBuffer;
+        } finally {
+            tokenBuffer = null;
+        }
+    }
+
+    // API incremental: devuelve el siguiente token sin construir la lista completa.
+    // Después del EOF sigue devolviendo el mismo token EOF.
+    @Override
+    public Token nextToken() {
+        if (eofToken != null) {
+            return eofToken;
+        }
+        while (pendingToken == null) {
+            if (isAtLexerEnd() || errorLimitReached()) { // Usa un isAtEnd específico para el lexer
+                // La línea es la 'line' actual (que pudo haber sido incrementada por un \n final)
+                // La columna para EOF puede ser la columna después del último carácter real
+                // o 1 si la última línea estaba vacía o terminó con \n.
+                eofToken = new Token(Token.TokenType.EOF, "", null, line, calculateColumnForCurrentPos(current), current, 0);
+                return eofToken;
+            }
+            start = current; // Marcar inicio del lexema
+            scanToken(); // Los espacios no producen token; se sigue escaneando
+        }
+        Token token = pendingToken;
+        pendingToken = null;
+        return token;
+    }
+
+    // Índice offset -> (línea, columna) del código escaneado. Es válido para
+    // todo el texto ya recorrido por scanTokens()/nextToken().
+    public LineIndex getLineIndex() {
+        return lineIndex;
+    }
+
     private void scanToken() {
         char c = advanceLexerChar(); // Avanza el carácter y actualiza 'current'
 
@@ -65,7 +202,7 @@ public class Lexer {
                 if (matchLexerChar('=')) { // Si es '<='
                     // Error léxico: '<=' no está permitido
                     // Consumimos el '=', el lexema es "<="
-                    addErrorToken("Operador relacional '<=' no está permitido. Use '<' o '=='.");
+                    addErrorToken(Diagnostic.Key.RELATIONAL_NOT_ALLOWED, "<");
                 } else {
                     addToken(Token.TokenType.OP_MENOR);
                 }
@@ -73,7 +210,7 @@ public class Lexer {
             case '>':
                 if (matchLexerChar('=')) { // Si es '>='
                     // Error léxico: '>=' no está permitido
-                    addErrorToken("Operador relacional '>=' no está permitido. Use '>' o '=='.");
+                    addErrorToken(Diagnostic.Key.RELATIONAL_NOT_ALLOWED, ">");
                 } else {
                     addToken(Token.TokenType.OP_MAYOR);
                 }
@@ -94,6 +231,7 @@ public class Lexer {
                  // Generar un token EOL y luego incrementar la línea
                 addToken(Token.TokenType.EOL, "\\n"); // Lexema podría ser útil para debug
                 line++; // Incrementar línea
+                lineIndex.addLineStart(current);
                 // La columna se recalculará para el siguiente token basado en 'start' y el inicio de esta nueva línea.
                 break;
 
@@ -111,7 +249,7 @@ public class Lexer {
                     // Carácter no reconocido
                     // 'start' ya está en 'c', 'current' avanzó uno más allá de 'c'
                     // El lexema sería solo 'c'.
-                    addErrorToken("Caracter inesperado: '" + c + "'");
+                    addErrorToken(Diagnostic.Key.UNEXPECTED_CHARACTER, null);
                 }
                 break;
         }
@@ -122,8 +260,7 @@ public class Lexer {
         // y está en source.charAt(start)
         while (isAlphaNumeric(peekLexerChar())) advanceLexerChar();
 
-        String text = source.substring(start, current);
-        Token.TokenType type = keywords.get(text);
+        Token.TokenType type = keywordType(start, current);
 
         if (type == null) { // No es una palabra reservada, es un ID
             // La validación de [A-Z][A-Z0-9]* se hace parcialmente por isAlphaStart y isAlphaNumeric
@@ -138,11 +275,15 @@ public class Lexer {
         // El primer dígito ya fue consumido por advanceLexerChar()
         while (isDigit(peekLexerChar())) advanceLexerChar();
 
-        String numStr = source.substring(start, current);
-        try {
-            addToken(Token.TokenType.NUMERO_ENTERO, Integer.parseInt(numStr));
-        } catch (NumberFormatException e) {
-             addErrorToken("Número entero inválido o muy grande: '" + numStr + "'");
+        // Se convierte directamente desde los caracteres para no crear el String
+        long value = 0;
+        for (int i = start; i < current && value <= Integer.MAX_VALUE; i++) {
+            value = value * 10 + (charAt(i) - '0');
+        }
+        if (value <= Integer.MAX_VALUE) {
+            addNumberToken((int) value);
+        } else {
+             addErrorToken(Diagnostic.Key.INVALID_NUMBER, null);
         }
     }
     
@@ -157,7 +298,7 @@ public class Lexer {
             // Si el *carácter* actual es \n o \r, es un error DENTRO de la cadena.
             char peeked = peekLexerChar();
             if (peeked == '\n' || peeked == '\r') {
-                 addErrorToken("Salto de línea o retorno de carro no permitido en cadena literal.");
+                 addErrorToken(Diagnostic.Key.NEWLINE_IN_STRING, null);
                  // Aquí, la cadena está malformada. Podríamos no consumir el \n/ \r
                  // para que luego se tokenice como EOL si eso tiene sentido, o consumir
                  // y reportar la cadena como error.
@@ -176,34 +317,87 @@ public class Lexer {
         }
         // ... (resto de la lógica de string para cerrar comillas y añadir token)
          if (isAtLexerEnd()) {
-            addErrorToken("Cadena literal no terminada.");
+            addErrorToken(Diagnostic.Key.UNTERMINATED_STRING, null);
             return;
         }
         advanceLexerChar(); // Consumir la comilla de cierre "
-        String value = source.substring(start + 1, current - 1);
-        addToken(Token.TokenType.CADENA_LITERAL, value);
+        addStringToken();
     }
     // --- Métodos de ayuda del Lexer ---
 
     private boolean isAtLexerEnd() {
-        return current >= source.length();
+        if (source != null) {
+            return current >= source.length();
+        }
+        return !fillWindow(current);
     }
 
     private char advanceLexerChar() {
         // Devuelve el carácter en 'current' y luego incrementa 'current'
-        return source.charAt(current++);
+        return charAt(current++);
     }
 
     private boolean matchLexerChar(char expected) {
         if (isAtLexerEnd()) return false;
-        if (source.charAt(current) != expected) return false;
+        if (charAt(current) != expected) return false;
         current++; // Consumir si coincide
         return true;
     }
 
     private char peekLexerChar() {
         if (isAtLexerEnd()) return '\0'; // Carácter nulo para indicar fin
-        return source.charAt(current);
+        return charAt(current);
+    }
+
+    // Acceso a caracteres por offset absoluto. En modo Reader, el llamador ya
+    // garantizó (vía isAtLexerEnd) que el offset está dentro de la ventana.
+    private char charAt(int pos) {
+        if (source != null) {
+            return source.charAt(pos);
+        }
+        return window[pos - windowBase];
+    }
+
+    private String text(int from, int to) {
+        if (source != null) {
+            return source.subSequence(from, to).toString();
+        }
+        return new String(window, from - windowBase, to - from);
+    }
+
+    // Asegura que el carácter en 'pos' esté en la ventana, leyendo más del Reader
+    // si hace falta. Devuelve false si la entrada terminó antes de 'pos'.
+    private boolean fillWindow(int pos) {
+        while (pos >= windowEnd) {
+            if (readerExhausted) {
+                return false;
+            }
+            if (windowEnd - windowBase == window.length) {
+                // Ventana llena: descartar lo anterior al lexema actual y,
+                // si el lexema ocupa toda la ventana, duplicarla.
+                int keep = windowEnd - start;
+                if (start > windowBase) {
+                    System.arraycopy(window, start - windowBase, window, 0, keep);
+                    windowBase = start;
+                }
+                if (keep == window.length) {
+                    window = Arrays.copyOf(window, window.length * 2);
+                }
+            }
+            int offsetInWindow = windowEnd - windowBase;
+            int read;
+            try {
+                read = reader.read(window, offsetInWindow, window.length - offsetInWindow);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error al leer el código fuente", e);
+            }
+            if (read < 0) {
+                readerExhausted = true;
+            } else {
+                windowEnd += read;
+            }
+        }
+        return true;
     }
 
     // peekNext no se usa mucho en este lexer, pero podría ser útil
@@ -212,6 +406,19 @@ public class Lexer {
     //    return source.charAt(current + 1);
     // }
 
+    // Tipo de palabra reservada del texto [from, to), o null si es un ID.
+    private Token.TokenType keywordType(int from, int to) {
+        int length = to - from;
+        for (int k = 0; k < keywordTexts.length; k++) {
+            String word = keywordTexts[k];
+            if (word.length() != length) continue;
+            int i = 0;
+            while (i < length && word.charAt(i) == charAt(from + i)) i++;
+            if (i == length) return keywordTypes[k];
+        }
+        return null;
+    }
+
     private boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
@@ -229,33 +436,59 @@ public class Lexer {
     }
 
     private void addToken(Token.TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line, calculateColumnForCurrentPos(start)));
+        if (tokenBuffer != null) {
+            // El buffer deriva lexema y literal del código fuente cuando se piden
+            tokenBuffer.add(type, start, current - start, line, 0);
+            return;
+        }
+        String text = text(start, current);
+        pendingToken = new Token(type, text, literal, line, calculateColumnForCurrentPos(start), start, current - start);
+    }
+
+    private void addNumberToken(int value) {
+        if (tokenBuffer != null) {
+            tokenBuffer.add(Token.TokenType.NUMERO_ENTERO, start, current - start, line, value);
+            return;
+        }
+        addToken(Token.TokenType.NUMERO_ENTERO, value);
+    }
+
+    private void addStringToken() {
+        if (tokenBuffer != null) {
+            addToken(Token.TokenType.CADENA_LITERAL, null);
+            return;
+        }
+        addToken(Token.TokenType.CADENA_LITERAL, text(start + 1, current - 1)); // Sin las comillas
     }
     
-    private void addErrorToken(String message) {
+    // El mensaje no se arma acá: se guarda la clave y el argumento que sigue al
+    // texto del token (null si la clave no lo usa).
+    private void addErrorToken(Diagnostic.Key key, Object arg) {
+        errorCount++;
+        if (tokenBuffer != null) {
+            tokenBuffer.addError(start, current - start, line, key, arg);
+            return;
+        }
         // El lexema del error es desde 'start' hasta 'current' (que ya avanzó)
-        String problematicLexeme = source.substring(start, current);
-        
-        // El mensaje de error ya es específico. El lexema problemático se añade a la info del token.
-        tokens.add(new Token(Token.TokenType.ERROR, problematicLexeme + " (" + message + ")",
-                             null, line, calculateColumnForCurrentPos(start)));
+        String problematicLexeme = text(start, current);
+        int column = calculateColumnForCurrentPos(start);
+        Object[] args = (arg != null) ? new Object[] {problematicLexeme, arg} : new Object[] {problematicLexeme};
+        Diagnostic error = new Diagnostic(Diagnostic.Kind.LEXICAL, Diagnostic.Severity.ERROR,
+                start, current - start, line, column, key, args);
+        pendingToken = new Token(Token.TokenType.ERROR, problematicLexeme,
+                             null, line, column, start, current - start, error);
         // No es necesario avanzar 'current' aquí porque scanToken() se llamará de nuevo
         // y 'current' ya está en la posición para el siguiente token o ya consumió lo problemático.
     }
 
-    // Calcula la columna inicial de un token dado su 'start' en el 'source'
+    private boolean errorLimitReached() {
+        return maxErrors > 0 && errorCount >= maxErrors;
+    }
+
+    // Calcula la columna inicial de un token dado su 'start' en el 'source'.
+    // 'line' siempre es la línea que contiene a 'start' (el '\n' que la incrementa
+    // se emite como token propio), así que basta con el inicio de línea registrado.
     private int calculateColumnForCurrentPos(int tokenStartIndex) {
-        int col = 1;
-        int currentLineActualStart = 0;
-        // Buscar el inicio de la línea donde está tokenStartIndex
-        for (int i = tokenStartIndex -1; i >= 0; i--) {
-            if (source.charAt(i) == '\n') {
-                currentLineActualStart = i + 1;
-                break;
-            }
-        }
-        col = tokenStartIndex - currentLineActualStart + 1;
-        return col;
+        return lineIndex.getColumn(tokenStartIndex, line);
     }
 }
\ No newline at end of file
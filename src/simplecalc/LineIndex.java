@@ -0,0 +1,102 @@
+// LineIndex.java
+package simplecalc;
+
+import java.util.Arrays;
+
+// Tabla de offsets de inicio de línea que el Lexer va llenando mientras escanea.
+// Permite convertir un offset del código fuente a (línea, columna) en O(log n)
+// sin volver a recorrer el texto hacia atrás.
+public class LineIndex {
+    private int[] lineStarts = new int[16];
+    private int lineCount = 1; // La línea 1 siempre empieza en el offset 0
+
+    // Registra que una nueva línea empieza en 'offset' (el carácter siguiente a un '\n').
+    void addLineStart(int offset) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = offset;
+    }
+
+    // Vuelve a una sola línea conservando el arreglo (Lexer.reset()).
+    void clear() {
+        lineCount = 1;
+    }
+
+    // Agrega los inicios de línea de 'chunk', un índice hecho sobre un texto
+    // aparte que en este empieza en 'offset' (su línea 1 ya está registrada).
+    void appendLines(LineIndex chunk, int offset) {
+        int count = chunk.lineCount - 1;
+        if (lineCount + count > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(lineCount + count, lineStarts.length * 2));
+        }
+        for (int i = 0; i < count; i++) {
+            lineStarts[lineCount + i] = chunk.lineStarts[i + 1] + offset;
+        }
+        lineCount += count;
+    }
+
+    // Edición del texto: los inicios de línea dentro de (from, oldTo] se reemplazan
+    // por 'newStarts' (ya en offsets del texto nuevo) y los posteriores se desplazan
+    // 'delta' caracteres.
+    void replaceRange(int from, int oldTo, int[] newStarts, int newCount, int delta) {
+        int first = getLine(from); // Índice del primer inicio de línea > from
+        int end = first;
+        while (end < lineCount && lineStarts[end] <= oldTo) {
+            end++;
+        }
+        int tail = lineCount - end;
+        int newLineCount = first + newCount + tail;
+        if (newLineCount > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(newLineCount, lineStarts.length * 2));
+        }
+        System.arraycopy(lineStarts, end, lineStarts, first + newCount, tail);
+        System.arraycopy(newStarts, 0, lineStarts, first, newCount);
+        for (int i = first + newCount; i < newLineCount; i++) {
+            lineStarts[i] += delta;
+        }
+        lineCount = newLineCount;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    // Offset del primer carácter de la línea (1-based).
+    public int getLineStart(int line) {
+        if (line < 1 || line > lineCount) {
+            throw new IndexOutOfBoundsException("Línea fuera de rango: " + line);
+        }
+        return lineStarts[line - 1];
+    }
+
+    // Línea (1-based) que contiene el offset dado.
+    public int getLine(int offset) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    // Columna (1-based) del offset dentro de su línea.
+    public int getColumn(int offset) {
+        return offset - lineStarts[getLine(offset) - 1] + 1;
+    }
+
+    // Columna (1-based) de un offset cuando ya se conoce su línea; evita la búsqueda.
+    public int getColumn(int offset, int line) {
+        return offset - lineStarts[line - 1] + 1;
+    }
+
+    // Operación inversa: offset correspondiente a (línea, columna), ambos 1-based.
+    public int getOffset(int line, int column) {
+        return getLineStart(line) + column - 1;
+    }
+}
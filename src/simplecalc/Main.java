@@ -11,9 +11,27 @@ package simplecalc;
 
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
+import java.util.Arrays;
 
 public class Main {
     public static void main(String[] args) {
+        // Generador de programas sintéticos (ProgramGenerator)
+        if (args.length > 0 && args[0].equals("--generate")) {
+            System.exit(ProgramGenerator.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // Ejecución de un programa sobre una tabla de datos (ColumnarEvaluator)
+        if (args.length > 0 && args[0].equals("--eval")) {
+            System.exit(ColumnarEvaluator.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // Servidor de validación en un socket local (ValidationServer)
+        if (args.length > 0 && args[0].equals("--serve")) {
+            System.exit(ValidationServer.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // Con argumentos: validación por lotes en la línea de comandos, sin abrir el IDE
+        if (args.length > 0) {
+            System.exit(BatchValidator.run(args));
+        }
+
         // Para mejor look & feel en algunos sistemas
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
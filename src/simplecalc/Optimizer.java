@@ -0,0 +1,176 @@
+// Optimizer.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+// Etapa opcional después del Parser: reescribe el AST con una secuencia de pasadas
+// y reporta cuántos nodos eliminó. Las divisiones entre una constante cero no se
+// pliegan; quedan en el programa y se reportan como diagnóstico.
+public class Optimizer {
+
+    public enum Pass {
+        CONSTANT_FOLDING,          // (2 * 3) + Y  ->  6 + Y
+        ALGEBRAIC_SIMPLIFICATION,  // Y * 1, Y + 0, Y - 0, Y / 1  ->  Y
+        DEAD_BRANCH_REMOVAL        // SI (1 < 2) acción -> acción;  SI (2 < 1) acción -> (nada)
+    }
+
+    public record Result(Ast.Program program, int removedNodes, List<String> diagnostics) {
+    }
+
+    private final Set<Pass> passes;
+    private List<String> diagnostics;
+
+    public Optimizer() {
+        this(EnumSet.allOf(Pass.class));
+    }
+
+    public Optimizer(Set<Pass> passes) {
+        this.passes = EnumSet.copyOf(passes);
+    }
+
+    public Result optimize(Ast.Program program) {
+        diagnostics = new ArrayList<>();
+        int before = countNodes(program);
+        Ast.Program optimized = program;
+        for (Pass pass : Pass.values()) { // Siempre en el orden de la enumeración
+            if (passes.contains(pass)) {
+                optimized = apply(pass, optimized);
+            }
+        }
+        return new Result(optimized, before - countNodes(optimized), diagnostics);
+    }
+
+    private Ast.Program apply(Pass pass, Ast.Program program) {
+        List<Ast.Statement> statements = new ArrayList<>(program.statements().size());
+        for (Ast.Statement statement : program.statements()) {
+            Ast.Statement rewritten = (pass == Pass.DEAD_BRANCH_REMOVAL)
+                    ? removeDeadBranch(statement)
+                    : rewriteExpressions(statement, pass);
+            if (rewritten != null) {
+                statements.add(rewritten);
+            }
+        }
+        return new Ast.Program(statements, program.variables());
+    }
+
+    // ---- Plegado de constantes y simplificación algebraica ----
+
+    private Ast.Statement rewriteExpressions(Ast.Statement statement, Pass pass) {
+        if (statement instanceof Ast.Assignment assignment) {
+            return new Ast.Assignment(assignment.target(), rewrite(assignment.value(), pass));
+        }
+        if (statement instanceof Ast.If conditional) {
+            Ast.Condition condition = conditional.condition();
+            return new Ast.If(new Ast.Condition(rewrite(condition.left(), pass), condition.op(),
+                    rewrite(condition.right(), pass)), rewriteExpressions(conditional.action(), pass));
+        }
+        return statement; // ENTRADA y SALIDA no tienen expresiones que reescribir
+    }
+
+    private Ast.Expr rewrite(Ast.Expr expr, Pass pass) {
+        if (!(expr instanceof Ast.Binary binary)) {
+            return expr;
+        }
+        Ast.Expr left = rewrite(binary.left(), pass);
+        Ast.Expr right = rewrite(binary.right(), pass);
+        Ast.Expr simplified = (pass == Pass.CONSTANT_FOLDING)
+                ? fold(binary, left, right)
+                : simplify(binary, left, right);
+        if (simplified != null) {
+            return simplified;
+        }
+        if (left == binary.left() && right == binary.right()) {
+            return binary;
+        }
+        return new Ast.Binary(binary.op(), left, right, binary.line(), binary.column());
+    }
+
+    private Ast.Expr fold(Ast.Binary binary, Ast.Expr left, Ast.Expr right) {
+        if (!(left instanceof Ast.Num l) || !(right instanceof Ast.Num r)) {
+            return null;
+        }
+        switch (binary.op()) {
+            case SUMA:
+                return new Ast.Num(l.value() + r.value());
+            case RESTA:
+                return new Ast.Num(l.value() - r.value());
+            case MULT:
+                return new Ast.Num(l.value() * r.value());
+            default:
+                if (r.value() == 0) {
+                    // Se deja para que falle en ejecución, igual que sin optimizar
+                    diagnostics.add(String.format("[Línea %d, Col %d] Advertencia: división entre cero; la expresión no se pliega.",
+                            binary.line(), binary.column()));
+                    return null;
+                }
+                return new Ast.Num(l.value() / r.value());
+        }
+    }
+
+    private static Ast.Expr simplify(Ast.Binary binary, Ast.Expr left, Ast.Expr right) {
+        switch (binary.op()) {
+            case SUMA:
+                if (isConstant(right, 0)) return left;
+                if (isConstant(left, 0)) return right;
+                return null;
+            case RESTA:
+                return isConstant(right, 0) ? left : null;
+            case MULT:
+                if (isConstant(right, 1)) return left;
+                if (isConstant(left, 1)) return right;
+                return null;
+            default:
+                return isConstant(right, 1) ? left : null;
+        }
+    }
+
+    private static boolean isConstant(Ast.Expr expr, int value) {
+        return expr instanceof Ast.Num num && num.value() == value;
+    }
+
+    // ---- Eliminación de ramas muertas ----
+
+    // Devuelve la sentencia a conservar, o null si se elimina.
+    private static Ast.Statement removeDeadBranch(Ast.Statement statement) {
+        if (!(statement instanceof Ast.If conditional)) {
+            return statement;
+        }
+        Ast.Condition condition = conditional.condition();
+        if (!(condition.left() instanceof Ast.Num) || !(condition.right() instanceof Ast.Num)) {
+            return statement;
+        }
+        return Evaluator.test(condition, new int[0]) ? conditional.action() : null;
+    }
+
+    // ---- Conteo de nodos ----
+
+    static int countNodes(Ast.Program program) {
+        int count = 0;
+        for (Ast.Statement statement : program.statements()) {
+            count += countNodes(statement);
+        }
+        return count;
+    }
+
+    private static int countNodes(Ast.Statement statement) {
+        if (statement instanceof Ast.Assignment assignment) {
+            return 1 + countNodes(assignment.value());
+        }
+        if (statement instanceof Ast.If conditional) {
+            Ast.Condition condition = conditional.condition();
+            return 2 + countNodes(condition.left()) + countNodes(condition.right())
+                    + countNodes(conditional.action());
+        }
+        return 2; // Input u Output con su valor
+    }
+
+    private static int countNodes(Ast.Expr expr) {
+        if (expr instanceof Ast.Binary binary) {
+            return 1 + countNodes(binary.left()) + countNodes(binary.right());
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,147 @@
+// ParallelLexer.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Escaneo en paralelo de códigos grandes. Ningún token cruza un salto de línea
+// (una cadena que lo encuentra termina en un error antes del '\n', y el '\n'
+// es su propio token EOL), así que el texto se puede cortar justo después de
+// cualquier '\n' y escanear cada tramo por separado. Los tramos se reparten en
+// un ForkJoinPool y después se unen corrigiendo offsets, líneas e índices de
+// los errores. El resultado es idéntico al de Lexer.scanTokenBuffer().
+//
+// Códigos de menos de dos tramos, o un pool de un solo hilo, se escanean
+// directamente: unir los tramos tiene su costo y sin paralelismo no se recupera.
+public class ParallelLexer {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 18; // Caracteres por tramo
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelLexer(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("El tamaño de tramo debe ser positivo: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public List<Token> scanTokens(CharSequence source) {
+        return scanTokenBuffer(source).asList();
+    }
+
+    public TokenBuffer scanTokenBuffer(CharSequence source) {
+        if (source.length() < 2 * chunkSize || pool.getParallelism() < 2) {
+            return new Lexer(source).scanTokenBuffer();
+        }
+        List<Chunk> chunks = pool.invoke(new LexTask(source, 0, source.length()));
+
+        int tokenCount = 1; // El EOF del último tramo
+        for (Chunk chunk : chunks) {
+            tokenCount += chunk.tokens.size() - 1;
+        }
+        LineIndex lineIndex = new LineIndex();
+        TokenBuffer result = new TokenBuffer(source, lineIndex, tokenCount);
+        int firstLine = 1;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            boolean last = (c == chunks.size() - 1);
+            // Cada tramo termina en '\n' salvo el último: su EOF se descarta
+            result.append(chunk.tokens, last ? chunk.tokens.size() : chunk.tokens.size() - 1,
+                    chunk.offset, firstLine);
+            LineIndex chunkLines = chunk.tokens.getLineIndex();
+            lineIndex.appendLines(chunkLines, chunk.offset);
+            firstLine += chunkLines.getLineCount() - 1;
+        }
+        return result;
+    }
+
+    private record Chunk(int offset, TokenBuffer tokens) {
+    }
+
+    // Divide [from, to) en el primer '\n' desde la mitad hasta que los tramos
+    // quedan por debajo de chunkSize.
+    private final class LexTask extends RecursiveTask<List<Chunk>> {
+        private final CharSequence source;
+        private final int from;
+        private final int to;
+
+        LexTask(CharSequence source, int from, int to) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            int split = (to - from > chunkSize) ? splitPoint() : -1;
+            if (split < 0) {
+                List<Chunk> chunks = new ArrayList<>(1);
+                chunks.add(new Chunk(from, new Lexer(new Slice(source, from, to)).scanTokenBuffer()));
+                return chunks;
+            }
+            LexTask left = new LexTask(source, from, split);
+            left.fork();
+            List<Chunk> right = new LexTask(source, split, to).compute();
+            List<Chunk> chunks = left.join();
+            chunks.addAll(right);
+            return chunks;
+        }
+
+        // Offset siguiente a un '\n' cerca de la mitad; -1 si no hay ninguno.
+        private int splitPoint() {
+            int mid = from + (to - from) / 2;
+            for (int i = mid; i < to - 1; i++) {
+                if (source.charAt(i) == '\n') {
+                    return i + 1;
+                }
+            }
+            for (int i = mid - 1; i > from; i--) {
+                if (source.charAt(i) == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Vista de un tramo del código sin copiarlo.
+    private static final class Slice implements CharSequence {
+        private final CharSequence source;
+        private final int from;
+        private final int to;
+
+        Slice(CharSequence source, int from, int to) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return source.charAt(from + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return source.subSequence(from + start, from + end);
+        }
+
+        @Override
+        public String toString() {
+            return source.subSequence(from, to).toString();
+        }
+    }
+}
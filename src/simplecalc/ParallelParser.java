@@ -0,0 +1,159 @@
+// ParallelParser.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Análisis sintáctico en paralelo de programas grandes, con los mismos errores
+// que Parser.parse(). Las sentencias del cuerpo terminan en PUNTO y no anidan
+// bloques, así que el cuerpo se puede cortar después de cada 'PUNTO EOL*' (los
+// mismos tramos que usa IncrementalAnalyzer):
+//
+// 1. Los tramos se analizan en paralelo en modo de registro (ParseLog), cada
+//    grupo con su propio Parser y su propia SymbolTable.
+// 2. Los registros se reaplican en orden sobre una sola tabla. Es una pasada
+//    secuencial pero barata: solo recorre los eventos, no los tokens, y ahí se
+//    resuelve lo que depende del código anterior (variables sin valor) y dónde
+//    se habría detenido el parse completo.
+//
+// Solo da el resultado y los errores; para el AST se usa Parser. Programas
+// chicos, o un pool de un solo hilo, se analizan con Parser directamente.
+public class ParallelParser {
+    public static final int DEFAULT_TOKENS_PER_TASK = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final int tokensPerTask;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final List<String> errors = Diagnostic.formatted(diagnostics);
+
+    public ParallelParser() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TOKENS_PER_TASK);
+    }
+
+    public ParallelParser(ForkJoinPool pool, int tokensPerTask) {
+        if (tokensPerTask < 1) {
+            throw new IllegalArgumentException("La cantidad de tokens por tarea debe ser positiva: " + tokensPerTask);
+        }
+        this.pool = pool;
+        this.tokensPerTask = tokensPerTask;
+    }
+
+    // Errores sintácticos y semánticos del último parse(), iguales a los de Parser.
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public boolean parse(TokenBuffer tokens) {
+        diagnostics.clear();
+        if (tokens.size() < 2 * tokensPerTask || pool.getParallelism() < 2) {
+            Parser parser = new Parser(tokens);
+            boolean valid = parser.parse();
+            diagnostics.addAll(parser.getDiagnostics());
+            return valid;
+        }
+
+        Parser parser = new Parser(tokens);
+        SymbolTable symbols = parser.getSymbolTable();
+        ParseLog header = new ParseLog();
+        int bodyStart = parser.parseHeader(header);
+        boolean running = header.replay(tokens, 0, symbols, diagnostics);
+        if (bodyStart < 0) {
+            return false;
+        }
+        int bodyEnd = bodyStart;
+        while (tokens.type(bodyEnd) != Token.TokenType.LLAVE_DER && tokens.type(bodyEnd) != Token.TokenType.EOF) {
+            bodyEnd++;
+        }
+
+        // Los cortes se eligen sin analizar: el primer fin de tramo después de
+        // cada bloque de tokensPerTask tokens
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(bodyStart);
+        int i = bodyStart + tokensPerTask;
+        while (i < bodyEnd) {
+            while (i < bodyEnd && tokens.type(i) != Token.TokenType.PUNTO) {
+                i++;
+            }
+            if (i < bodyEnd) {
+                i++;
+                while (i < bodyEnd && tokens.type(i) == Token.TokenType.EOL) {
+                    i++;
+                }
+            }
+            cuts.add(i);
+            i += tokensPerTask;
+        }
+        if (cuts.get(cuts.size() - 1) < bodyEnd) {
+            cuts.add(bodyEnd);
+        }
+
+        List<Range> ranges = pool.invoke(new ParseTask(tokens, cuts, 0, cuts.size() - 1));
+        for (int k = 0; k < ranges.size() && running; k++) {
+            Range range = ranges.get(k);
+            // Los slots del registro son de la tabla de otro Parser
+            SymbolTable rangeSymbols = range.symbols();
+            int[] map = new int[rangeSymbols.size()];
+            for (int slot = 0; slot < map.length; slot++) {
+                map[slot] = symbols.intern(rangeSymbols.name(slot));
+            }
+            range.log().remapSlots(map);
+            running = range.log().replay(tokens, range.start(), symbols, diagnostics);
+        }
+
+        if (running) {
+            ParseLog trailer = new ParseLog();
+            parser.parseTrailer(bodyEnd, trailer);
+            trailer.replay(tokens, bodyEnd, symbols, diagnostics);
+        }
+        return diagnostics.isEmpty();
+    }
+
+    private record Range(int start, ParseLog log, SymbolTable symbols) {
+    }
+
+    // Analiza los rangos [cuts[from], cuts[from+1]) ... [cuts[to-1], cuts[to]).
+    private static final class ParseTask extends RecursiveTask<List<Range>> {
+        private final TokenBuffer tokens;
+        private final List<Integer> cuts;
+        private final int from;
+        private final int to;
+
+        ParseTask(TokenBuffer tokens, List<Integer> cuts, int from, int to) {
+            this.tokens = tokens;
+            this.cuts = cuts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Range> compute() {
+            if (to - from == 1) {
+                int start = cuts.get(from);
+                int end = cuts.get(to);
+                Parser parser = new Parser(tokens);
+                ParseLog log = new ParseLog();
+                int stop = parser.parseBodyRange(start, end, log);
+                if (!log.isAborted() && stop != end) {
+                    throw new IllegalStateException("El rango [" + start + ", " + end
+                            + ") terminó en el token " + stop + ".");
+                }
+                List<Range> ranges = new ArrayList<>();
+                ranges.add(new Range(start, log, parser.getSymbolTable()));
+                return ranges;
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(tokens, cuts, from, mid);
+            left.fork();
+            List<Range> right = new ParseTask(tokens, cuts, mid, to).compute();
+            List<Range> ranges = left.join();
+            ranges.addAll(right);
+            return ranges;
+        }
+    }
+}
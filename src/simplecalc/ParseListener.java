@@ -0,0 +1,33 @@
+// ParseListener.java
+package simplecalc;
+
+// Eventos del Parser para depuración y trazas. Todos los métodos tienen una
+// implementación vacía por defecto, y NONE es el listener que usa el Parser
+// si no se configura otro: con un único tipo de listener en el punto de llamada
+// el JIT inlinea las llamadas vacías y la traza no cuesta nada.
+public interface ParseListener {
+
+    // Reglas de la gramática, con el mismo nombre que su método en el Parser.
+    enum Rule {
+        PROGRAMA, CUERPO_PROGRAMA, SENTENCIA,
+        ASIGNACION_STMT, ENTRADA_STMT, SALIDA_STMT, VALOR_SALIDA,
+        SI_STMT, CONDICION_SIMPLE, OPERANDO_CONDICION, OPERADOR_RELACIONAL, ACCION_UNICA_SI,
+        EXPRESION_ARITMETICA, TERMINO, FACTOR
+    }
+
+    ParseListener NONE = new ParseListener() { };
+
+    default void enterRule(Rule rule, int tokenIndex) {
+    }
+
+    // No se emite si la regla termina con un error que aborta el análisis.
+    default void exitRule(Rule rule, int tokenIndex) {
+    }
+
+    default void tokenConsumed(int tokenIndex, Token.TokenType type) {
+    }
+
+    // synchronizeToStatementBoundary() descartó 'skippedTokens' tokens a partir de 'startTokenIndex'.
+    default void recovery(int startTokenIndex, int skippedTokens) {
+    }
+}
@@ -0,0 +1,114 @@
+// ParseLog.java
+package simplecalc;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Lo que hizo el Parser sobre un tramo de tokens en modo de registro: errores y
+// operaciones semánticas, en orden y con índices de token relativos al inicio
+// del tramo. Como no guarda líneas, columnas ni el estado de las variables, el
+// mismo registro sirve aunque el tramo se haya desplazado o cambie el código
+// anterior; replay() produce los mismos mensajes que un parse() completo.
+//
+// USE y ASSIGN guardan además el slot de la variable en la SymbolTable del
+// Parser que hizo el registro, así replay() no vuelve a buscar nombres.
+final class ParseLog {
+    static final byte SYNTAX_ERROR = 0;   // Error sintáctico en el token
+    static final byte LEXICAL_ERROR = 1;  // Token ERROR ignorado en el cuerpo
+    static final byte INTERNAL_ERROR = 2; // Mensaje sin posición
+    static final byte USE = 3;            // Lectura de la variable del token
+    static final byte ASSIGN = 4;         // La variable del token recibe valor
+    static final byte BRANCH_BEGIN = 5;   // Empieza la acción de un SI
+    static final byte BRANCH_END = 6;     // Termina la acción de un SI
+    static final byte ABORT = 7;          // El parse se detuvo con una excepción
+
+    private byte[] kinds = new byte[8];
+    private int[] tokens = new int[8];
+    private int[] slots = new int[8];     // USE y ASSIGN
+    private String[] messages; // Solo para eventos con mensaje; se crea al primero
+    private int size = 0;
+
+    void add(byte kind, int relativeToken) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            tokens = Arrays.copyOf(tokens, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+            if (messages != null) {
+                messages = Arrays.copyOf(messages, size * 2);
+            }
+        }
+        kinds[size] = kind;
+        tokens[size] = relativeToken;
+        size++;
+    }
+
+    void add(byte kind, int relativeToken, int slot) {
+        add(kind, relativeToken);
+        slots[size - 1] = slot;
+    }
+
+    void add(byte kind, int relativeToken, String message) {
+        add(kind, relativeToken);
+        if (messages == null) {
+            messages = new String[kinds.length];
+        }
+        messages[size - 1] = message;
+    }
+
+    // Cambia los slots de USE y ASSIGN por map[slot]: para reaplicar con otra
+    // SymbolTable un registro hecho por otro Parser (ver ParallelParser).
+    void remapSlots(int[] map) {
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == USE || kinds[i] == ASSIGN) {
+                slots[i] = map[slots[i]];
+            }
+        }
+    }
+
+    boolean isAborted() {
+        return size > 0 && kinds[size - 1] == ABORT;
+    }
+
+    // Aplica el registro de un tramo que hoy empieza en el token 'base'. Los
+    // errores se agregan a 'diagnostics' y el estado de las variables se lleva en
+    // 'symbols', la tabla del Parser que hizo el registro. Devuelve false si el
+    // parse completo se habría detenido en este tramo.
+    boolean replay(TokenBuffer buffer, int base, SymbolTable symbols, List<Diagnostic> diagnostics) {
+        BitSet assignedBeforeBranch = null;
+        for (int i = 0; i < size; i++) {
+            int token = base + tokens[i];
+            switch (kinds[i]) {
+                case SYNTAX_ERROR:
+                    diagnostics.add(Diagnostic.at(Diagnostic.Kind.SYNTAX, buffer, token,
+                            Diagnostic.Key.MESSAGE, messages[i]));
+                    break;
+                case LEXICAL_ERROR:
+                    diagnostics.add(buffer.errorDiagnostic(token).withKind(Diagnostic.Kind.SKIPPED_TOKEN));
+                    break;
+                case INTERNAL_ERROR:
+                    diagnostics.add(Diagnostic.internal(messages[i]));
+                    break;
+                case USE:
+                    if (!symbols.isAssigned(slots[i])) {
+                        diagnostics.add(Diagnostic.at(Diagnostic.Kind.SEMANTIC, buffer, token,
+                                Parser.uninitializedVariableKey(symbols.isConditionallyAssigned(slots[i]))));
+                        return false;
+                    }
+                    break;
+                case ASSIGN:
+                    symbols.markAssigned(slots[i]);
+                    break;
+                case BRANCH_BEGIN:
+                    assignedBeforeBranch = symbols.saveAssigned();
+                    break;
+                case BRANCH_END:
+                    symbols.restoreAssigned(assignedBeforeBranch);
+                    break;
+                default: // ABORT
+                    return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,35 +3,171 @@ package simplecalc;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Set;
-import java.util.HashSet;
+import java.util.BitSet;
+import simplecalc.ParseListener.Rule;
 import static simplecalc.Token.TokenType.*;
 
 public class Parser {
 
-    private final List<Token> tokens;
+    // La fuente de tokens es una de estas tres; cambia con reset()
+    private List<Token> tokens; // null en modo streaming o buffer
+    private TokenBuffer buffer; // Modo buffer: se leen los tipos directo de los arreglos
     private int current = 0;
-    private List<String> errors = new ArrayList<>();
-    private Set<String> declaredVariables = new HashSet<>();
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final List<String> errors = Diagnostic.formatted(diagnostics);
+    private ParseListener listener = ParseListener.NONE;
+    private AnalysisMetrics metrics; // null = sin métricas
+    // Política de errores: 0 = recuperación completa; N > 0 = el parse se
+    // detiene al registrar el error N (1 = al primero).
+    private int maxErrors = 0;
+    private boolean errorLimitReached;
+    // Nombres internados a slots y variables definitivamente asignadas.
+    private final SymbolTable symbols = new SymbolTable();
+    private Ast.Program program;
+
+    // Modo de registro (parseHeader/parseBodyRange/parseTrailer): los errores y
+    // las operaciones semánticas se anotan en 'log' con índices relativos a
+    // 'logBase' en lugar de aplicarse, y el uso de una variable sin valor no
+    // detiene el análisis. Ver IncrementalAnalyzer.
+    private ParseLog log;
+    private int logBase;
+
+    // Modo streaming: la gramática solo necesita el token actual, uno de
+    // anticipación y el anterior, así que basta con esta ventana de tres.
+    private TokenSource tokenSource;
+    private Token previousToken;
+    private Token currentToken;
+    private Token nextToken; // Se pide a la fuente solo cuando alguien mira dos tokens adelante
+    private boolean streamStarted = false;
 
     public Parser(List<Token> tokens) {
+        reset(tokens);
+    }
+
+    public Parser(TokenBuffer buffer) {
+        reset(buffer);
+    }
+
+    // Consume los tokens a medida que los produce la fuente (p. ej. un Lexer sobre
+    // un Reader). En este modo parse() solo puede llamarse una vez.
+    public Parser(TokenSource tokenSource) {
+        reset(tokenSource);
+    }
+
+    // Parser sin tokens, para guardarlo en un ThreadLocal o un pool y usarlo con reset().
+    public Parser() {
+    }
+
+    // Prepara el Parser para otros tokens reutilizando la lista de diagnósticos
+    // y la tabla de símbolos: lo que devolvieron getDiagnostics(), getErrors()
+    // y getSymbolTable() se vacía, así que hay que copiarlo antes si se necesita.
+    // El AST de getProgram() no se reutiliza. El listener, las métricas y la
+    // cantidad máxima de errores se conservan.
+    public void reset(List<Token> tokens) {
+        // Si la lista es la vista de un TokenBuffer (lo que devuelve Lexer.scanTokens()),
+        // se lee el buffer directamente en lugar de materializar un Token por acceso.
+        TokenBuffer unwrapped = TokenBuffer.unwrap(tokens);
+        resetSource((unwrapped == null) ? tokens : null, unwrapped, null);
+    }
+
+    public void reset(TokenBuffer buffer) {
+        resetSource(null, buffer, null);
+    }
+
+    public void reset(TokenSource tokenSource) {
+        resetSource(null, null, tokenSource);
+    }
+
+    private void resetSource(List<Token> tokens, TokenBuffer buffer, TokenSource tokenSource) {
         this.tokens = tokens;
+        this.buffer = buffer;
+        this.tokenSource = tokenSource;
+        current = 0;
+        diagnostics.clear();
+        errorLimitReached = false;
+        symbols.clear();
+        program = null;
+        log = null;
+        logBase = 0;
+        previousToken = null;
+        currentToken = null;
+        nextToken = null;
+        streamStarted = false;
+    }
+
+    // Recibe los eventos de entrada/salida de reglas, tokens consumidos y recuperaciones.
+    public void setParseListener(ParseListener listener) {
+        this.listener = (listener != null) ? listener : ParseListener.NONE;
+    }
+
+    // Registra cada recuperación de errores en 'metrics' (null para no registrar).
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Cantidad de errores después de la cual parse() se detiene sin intentar
+    // recuperarse: 1 alcanza para saber si el programa es válido; 0 (el valor
+    // por defecto) analiza todo y reporta todos los errores. No se aplica al
+    // análisis por tramos de IncrementalAnalyzer.
+    public void setMaxErrors(int maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("La cantidad máxima de errores no puede ser negativa: " + maxErrors);
+        }
+        this.maxErrors = maxErrors;
+    }
+
+    // true si el último parse() se detuvo por llegar a setMaxErrors().
+    public boolean isErrorLimitReached() {
+        return errorLimitReached;
     }
 
+    // Errores sintácticos y semánticos del último parse(), en orden.
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    // Los mismos errores como texto; cada mensaje se arma cuando se lee.
     public List<String> getErrors() {
         return errors;
     }
 
+    // AST del último parse(); null si el programa tuvo errores.
+    public Ast.Program getProgram() {
+        return program;
+    }
+
+    // Slots del último parse(); son los mismos que llevan los Ast.Var del programa.
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
     public boolean parse() {
+        if (tokens == null && buffer == null && tokenSource == null) {
+            throw new IllegalStateException("El Parser no tiene tokens; use reset() antes de parse().");
+        }
         current = 0;
-        errors.clear();
-        declaredVariables.clear();
+        diagnostics.clear();
+        errorLimitReached = false;
+        symbols.clear();
+        program = null;
+        if (tokenSource != null) {
+            if (streamStarted) {
+                throw new IllegalStateException("El flujo de tokens ya fue consumido por un parse() anterior.");
+            }
+            streamStarted = true;
+            previousToken = null;
+            currentToken = tokenSource.nextToken();
+            nextToken = null;
+        }
         try {
-            programa();
+            Ast.Program result = programa();
+            if (diagnostics.isEmpty()) {
+                program = result;
+            }
             // Esta verificación de EOF es la que causa problemas si 'programa' no la maneja perfectamente.
             // La regla 'programa' debe consumir el EOF. Si no lo hace, es un error en 'programa'.
-            // if (!isAtEnd() && peek().type != EOF) { // Comentado temporalmente para enfocarnos
-            //      if (peek().type != EOF) {
+            // if (!isAtEnd() && peekType() != EOF) { // Comentado temporalmente para enfocarnos
+            //      if (peekType() != EOF) {
             //          error(peek(), "Tokens inesperados después del final del programa.",
             //                "Se esperaba el fin de la entrada después de la estructura principal del programa.");
             //      }
@@ -39,44 +175,103 @@ public class Parser {
         } catch (SyntaxError | SemanticError e) {
             return false;
         }
-        return errors.isEmpty();
+        return diagnostics.isEmpty();
+    }
+
+    // ---- Análisis por tramos en modo de registro (solo modo buffer) ----
+    // El cuerpo se puede cortar después de cada 'PUNTO EOL*': ninguna sentencia ni
+    // la recuperación de errores consume más allá de su primer PUNTO, y ninguna
+    // consume la '}' que cierra el cuerpo.
+
+    // Encabezado 'OPERACION ENTRADA {'. Devuelve el índice del primer token del
+    // cuerpo, o -1 si el parse se detuvo (queda un ABORT en el registro).
+    int parseHeader(ParseLog log) {
+        beginRecording(0, log);
+        try {
+            encabezado();
+            return current;
+        } catch (SyntaxError e) {
+            log.add(ParseLog.ABORT, current - logBase);
+            return -1;
+        } finally {
+            this.log = null;
+        }
+    }
+
+    // Sentencias del cuerpo en [from, to). Devuelve el índice donde se detuvo:
+    // 'to' (o la '}' / EOF del final del cuerpo) salvo que se haya abortado.
+    int parseBodyRange(int from, int to, ParseLog log) {
+        beginRecording(from, log);
+        try {
+            List<Ast.Statement> statements = new ArrayList<>();
+            while (current < to && !check(LLAVE_DER) && !isAtEnd()) {
+                elementoCuerpo(statements);
+            }
+        } catch (SyntaxError e) {
+            log.add(ParseLog.ABORT, current - logBase);
+        } finally {
+            this.log = null;
+        }
+        return current;
+    }
+
+    // Cierre '} SALIDA' a partir del token que terminó el cuerpo.
+    void parseTrailer(int from, ParseLog log) {
+        beginRecording(from, log);
+        try {
+            cierre();
+        } catch (SyntaxError e) {
+            log.add(ParseLog.ABORT, current - logBase);
+        } finally {
+            this.log = null;
+        }
     }
 
-    private void programa() {
+    private void beginRecording(int from, ParseLog log) {
+        if (buffer == null) {
+            throw new IllegalStateException("El análisis por tramos requiere un TokenBuffer.");
+        }
+        this.current = from;
+        this.log = log;
+        this.logBase = from;
+    }
+
+    private Ast.Program programa() {
+        listener.enterRule(Rule.PROGRAMA, current);
+        encabezado();
+        // cuerpo_programa ya maneja EOLs internos
+        List<Ast.Statement> statements = cuerpo_programa();
+        cierre();
+        listener.exitRule(Rule.PROGRAMA, current);
+        return new Ast.Program(statements, symbols.names());
+    }
+
+    private void encabezado() {
         consume(OPERACION_KEYWORD, "Se esperaba 'OPERACION' al inicio del programa.");
         consumeOptionalEOLs();
         consume(ENTRADA_KEYWORD, "Se esperaba 'ENTRADA' después de 'OPERACION'.");
         consumeOptionalEOLs();
         consume(LLAVE_IZQ, "Se esperaba '{' después de 'ENTRADA'.");
-        // cuerpo_programa ya maneja EOLs internos
-        cuerpo_programa();
+    }
+
+    private void cierre() {
         consume(LLAVE_DER, "Se esperaba '}' para cerrar el cuerpo del programa.");
         consumeOptionalEOLs();
         consume(SALIDA_KEYWORD, "Se esperaba 'SALIDA' al final del programa.");
         consumeOptionalEOLs(); // EOLs antes del EOF
         if (!check(EOF)) {
-            error(peek(), "Error al final de la entrada.",
-                    "Falta el token de fin de archivo (EOF) o hay tokens extra.");
+            error("Falta el token de fin de archivo (EOF) o hay tokens extra.");
         } else {
             consume(EOF, "Se esperaba el fin de la entrada después de 'SALIDA'.");
         }
     }
 
-        private void cuerpo_programa() {
+        private List<Ast.Statement> cuerpo_programa() {
+        listener.enterRule(Rule.CUERPO_PROGRAMA, current);
+        List<Ast.Statement> statements = new ArrayList<>();
         consumeOptionalEOLs();
         while (!check(LLAVE_DER) && !isAtEnd()) { // Condición del bucle
-            if (peek().type == ERROR) {
-                errors.add(String.format("[Línea %d, Col %d] Error léxico: %s. Se ignora.",
-                           peek().line, peek().column, peek().lexeme));
-                advance(); // Consume el token ERROR
-                continue;  // Vuelve al inicio del while
-            }
-            if (peek().type == EOL) {
-                advance(); // Consume el token EOL
-                continue;  // Vuelve al inicio del while
-            }
-            // Si no es ERROR ni EOL, y no es LLAVE_DER ni EOF, debe ser una sentencia
-            sentencia();
+            elementoCuerpo(statements);
             // IMPORTANTE: Si sentencia() encuentra un error y llama a synchronizeToStatementBoundary(),
             // y la sincronización consume tokens, debemos asegurarnos que 'current' haya avanzado.
             // Si sentencia() simplemente retorna sin consumir un token (porque no reconoció nada
@@ -86,154 +281,209 @@ public class Parser {
             // es LLAVE_DER, EOF, o EOL (que son manejados por este bucle while).
         }
         consumeOptionalEOLs();
+        listener.exitRule(Rule.CUERPO_PROGRAMA, current);
+        return statements;
+    }
+
+    // Una vuelta del bucle del cuerpo: un token ERROR, un EOL o una sentencia.
+    private void elementoCuerpo(List<Ast.Statement> statements) {
+        if (peekType() == ERROR) {
+            if (log != null) {
+                log.add(ParseLog.LEXICAL_ERROR, current - logBase);
+            } else {
+                Diagnostic lexical = (buffer != null) ? buffer.errorDiagnostic(current) : peek().error;
+                report(lexical.withKind(Diagnostic.Kind.SKIPPED_TOKEN));
+            }
+            advance(); // Consume el token ERROR
+            return;
+        }
+        if (peekType() == EOL) {
+            advance(); // Consume el token EOL
+            return;
+        }
+        // Si no es ERROR ni EOL, y no es LLAVE_DER ni EOF, debe ser una sentencia
+        Ast.Statement statement = sentencia();
+        if (statement != null) {
+            statements.add(statement);
+        }
     }
 
-       private void sentencia() {
-        System.out.println("DEBUG: Entrando a sentencia(), peek()=" + peek().type + ", lexema='" + peek().lexeme + "'"); // DEBUG
+       private Ast.Statement sentencia() {
+        listener.enterRule(Rule.SENTENCIA, current);
+        Ast.Statement statement = null;
 
         if (check(ID)) { // Si el token actual es un ID
             // Necesitamos mirar adelante de forma segura para ver si es una asignación
-            if (current + 1 < tokens.size() && tokens.get(current + 1).type == ASIGNACION) {
-                System.out.println("DEBUG:  sentencia: ID seguido de ASIGNACION -> asignacion_stmt()"); // DEBUG
-                asignacion_stmt();
+            if (peekNextType() == ASIGNACION) {
+                statement = asignacion_stmt();
             } else {
                 // Es un ID, pero no seguido de ASIGNACION. Esto es un error en SimpleCalc.
-                System.out.println("DEBUG:  sentencia: ID no seguido de ASIGNACION -> error"); // DEBUG
-                error(peek(), "Sentencia inválida comenzando con ID '" + peek().lexeme + "'.",
-                        "Un identificador debe ser parte de una asignación (ej: ID = valor.).");
+                error("Un identificador debe ser parte de una asignación (ej: ID = valor.).");
                 synchronizeToStatementBoundary(); // Intentar recuperar
             }
         } else if (check(ENTRADA_KEYWORD)) {
-            System.out.println("DEBUG:  sentencia: ENTRADA_KEYWORD -> entrada_stmt()"); // DEBUG
-            entrada_stmt();
+            statement = entrada_stmt();
         } else if (check(SALIDA_KEYWORD)) {
-            System.out.println("DEBUG:  sentencia: SALIDA_KEYWORD -> salida_stmt()"); // DEBUG
-            salida_stmt();
+            statement = salida_stmt();
         } else if (check(SI_KEYWORD)) {
-            System.out.println("DEBUG:  sentencia: SI_KEYWORD -> si_stmt()"); // DEBUG
-            si_stmt();
+            statement = si_stmt();
         }
         // Si hemos llegado aquí, el token actual no es un inicio válido de sentencia
         // Y tampoco es LLAVE_DER, EOF, o EOL (esos los maneja cuerpo_programa)
         // entonces es un error.
         // PERO, cuerpo_programa ya tiene un chequeo para EOL.
         // Así que aquí solo nos preocupamos si NO es un token de fin de bloque.
-        else if (peek().type != LLAVE_DER && peek().type != EOF && peek().type != EOL && peek().type != ERROR) {
-            // El chequeo de peek().type != ERROR es para no reportar doble error si el lexer ya lo hizo.
+        else if (peekType() != LLAVE_DER && peekType() != EOF && peekType() != EOL && peekType() != ERROR) {
+            // El chequeo de peekType() != ERROR es para no reportar doble error si el lexer ya lo hizo.
             // El ERROR es manejado por cuerpo_programa.
-            System.out.println("DEBUG:  sentencia: Token inesperado " + peek().type + " -> error de sentencia no reconocida"); // DEBUG
-            error(peek(), "Sentencia inválida o no reconocida.",
-                    "Se esperaba 'ENTRADA', 'SALIDA', 'SI', una asignación (ID = ...), o fin de bloque '}'.");
+            error("Se esperaba 'ENTRADA', 'SALIDA', 'SI', una asignación (ID = ...), o fin de bloque '}'.");
             synchronizeToStatementBoundary();
         }
         // Si es LLAVE_DER, EOF, o EOL, o ERROR, sentencia() simplemente retorna,
         // y cuerpo_programa() manejará esos casos (terminar bucle, consumir EOL/ERROR y continuar).
-        System.out.println("DEBUG: Saliendo de sentencia(), current ahora apunta a: " + (isAtEnd() ? "EOF" : peek().type)); // DEBUG
+        listener.exitRule(Rule.SENTENCIA, current);
+        return statement;
     }
 
     // Las reglas de sentencia deben ahora ser estrictas con el PUNTO.
-    private void asignacion_stmt() {
-        Token varNameToken = consume(ID, "Se esperaba un nombre de variable para la asignación.");
-        consume(ASIGNACION, "Se esperaba '=' después del nombre de variable '" + varNameToken.lexeme + "'.");
-        expresion_aritmetica(); // expresion_aritmetica NO debe consumir un EOL si está incompleta
+    private Ast.Assignment asignacion_stmt() {
+        listener.enterRule(Rule.ASIGNACION_STMT, current);
+        int nameToken = current;
+        consume(ID, "Se esperaba un nombre de variable para la asignación.");
+        int slot = internPrevious();
+        consume(ASIGNACION, "Se esperaba '=' después del nombre de variable '" + symbols.name(slot) + "'.");
+        Ast.Expr value = expresion_aritmetica(); // expresion_aritmetica NO debe consumir un EOL si está incompleta
         consume(PUNTO, "Se esperaba '.' para terminar la sentencia de asignación.");
+        markAssigned(slot, nameToken); // Marcar como inicializada (semántico)
         // Opcionalmente, consumir EOLs después de una sentencia completa
-        
-         // -------> DEBUG <---------
-    System.out.println("DEBUG asignacion_stmt: Antes de add, varNameToken.lexeme = " + varNameToken.lexeme);
-    System.out.println("DEBUG asignacion_stmt: declaredVariables ANTES: " + declaredVariables);
-    // -------> FIN DEBUG <---------
-
-    declaredVariables.add(varNameToken.lexeme); // Marcar como inicializada (semántico)
-
-    // -------> DEBUG <---------
-    System.out.println("DEBUG asignacion_stmt: declaredVariables DESPUÉS de add '" + varNameToken.lexeme + "': " + declaredVariables);
-    // -------> FIN DEBUG <---------
         consumeOptionalEOLs();
+        listener.exitRule(Rule.ASIGNACION_STMT, current);
+        return new Ast.Assignment(symbols.var(slot), value);
     }
 
     // ... (entrada_stmt, salida_stmt, valor_salida se mantienen como en TU original)
-    private void entrada_stmt() {
+    private Ast.Input entrada_stmt() {
+        listener.enterRule(Rule.ENTRADA_STMT, current);
         consume(ENTRADA_KEYWORD, "Error interno: Se esperaba 'ENTRADA' para entrada_stmt.");
-        Token varNameToken = consume(ID, "Se esperaba un nombre de variable después de 'ENTRADA'.");
+        int nameToken = current;
+        consume(ID, "Se esperaba un nombre de variable después de 'ENTRADA'.");
+        int slot = internPrevious();
         consume(PUNTO, "Se esperaba '.' para terminar la sentencia 'ENTRADA'.");
+        markAssigned(slot, nameToken); // ENTRADA le da valor a la variable
         consumeOptionalEOLs();
+        listener.exitRule(Rule.ENTRADA_STMT, current);
+        return new Ast.Input(symbols.var(slot));
     }
 
-    private void salida_stmt() {
+    private Ast.Output salida_stmt() {
+        listener.enterRule(Rule.SALIDA_STMT, current);
         consume(SALIDA_KEYWORD, "Error interno: Se esperaba 'SALIDA' para salida_stmt.");
-        valor_salida();
+        Ast.OutputValue value = valor_salida();
         consume(PUNTO, "Se esperaba '.' para terminar la sentencia 'SALIDA'.");
         consumeOptionalEOLs();
+        listener.exitRule(Rule.SALIDA_STMT, current);
+        return new Ast.Output(value);
     }
 
-    private void valor_salida() {
+    private Ast.OutputValue valor_salida() {
+        listener.enterRule(Rule.VALOR_SALIDA, current);
+        Ast.OutputValue value = null;
         if (check(ID)) {
-            Token idToken = peek();
-            checkVariableInitialized(idToken);
+            value = symbols.var(checkVariableInitialized());
             consume(ID, ""); // Mensaje no necesario si el chequeo ya lo hizo
         } else if (check(NUMERO_ENTERO)) {
+            value = new Ast.Num(peekIntLiteral());
             consume(NUMERO_ENTERO, "");
         } else if (check(CADENA_LITERAL)) {
+            value = new Ast.Text(peekStringLiteral());
             consume(CADENA_LITERAL, "");
         } else {
-            error(peek(), "Valor inválido para 'SALIDA'.",
-                    "Se esperaba un ID, un número entero o una cadena literal después de 'SALIDA'.");
+            error("Se esperaba un ID, un número entero o una cadena literal después de 'SALIDA'.");
         }
+        listener.exitRule(Rule.VALOR_SALIDA, current);
+        return value;
     }
 
     // ... (si_stmt y sus componentes se mantienen como en TU original)
-    private void si_stmt() {
+    private Ast.If si_stmt() {
+        listener.enterRule(Rule.SI_STMT, current);
         consume(SI_KEYWORD, "Error interno: Se esperaba 'SI' para si_stmt.");
         consume(PAREN_IZQ, "Se esperaba '(' después de 'SI'.");
-        condicion_simple();
+        Ast.Condition condition = condicion_simple();
         consume(PAREN_DER, "Se esperaba ')' después de la condición en 'SI'.");
-        accion_unica_si();
+        // La acción puede no ejecutarse: lo que asigne no cuenta como
+        // inicializado después del SI.
+        Ast.Statement action;
+        if (log != null) {
+            log.add(ParseLog.BRANCH_BEGIN, current - logBase);
+            action = accion_unica_si();
+            log.add(ParseLog.BRANCH_END, current - logBase);
+        } else {
+            BitSet assignedBefore = symbols.saveAssigned();
+            action = accion_unica_si();
+            symbols.restoreAssigned(assignedBefore);
+        }
+        listener.exitRule(Rule.SI_STMT, current);
+        return new Ast.If(condition, action);
     }
 
-    private void condicion_simple() {
-        operando_condicion();
-        operador_relacional();
-        operando_condicion();
+    private Ast.Condition condicion_simple() {
+        listener.enterRule(Rule.CONDICION_SIMPLE, current);
+        Ast.Expr left = operando_condicion();
+        Ast.RelOp op = operador_relacional();
+        Ast.Expr right = operando_condicion();
+        listener.exitRule(Rule.CONDICION_SIMPLE, current);
+        return new Ast.Condition(left, op, right);
     }
 
-    private void operando_condicion() {
+    private Ast.Expr operando_condicion() {
+        listener.enterRule(Rule.OPERANDO_CONDICION, current);
+        Ast.Expr operand = null;
         if (check(ID)) {
-            Token idToken = peek();
-            checkVariableInitialized(idToken);
+            operand = symbols.var(checkVariableInitialized());
             consume(ID, "");
         } else if (check(NUMERO_ENTERO)) {
+            operand = new Ast.Num(peekIntLiteral());
             consume(NUMERO_ENTERO, "");
         } else {
-            error(peek(), "Operando inválido en condición.",
-                    "Se esperaba un ID o un número entero en la condición.");
+            error("Se esperaba un ID o un número entero en la condición.");
         }
+        listener.exitRule(Rule.OPERANDO_CONDICION, current);
+        return operand;
     }
 
-    private void operador_relacional() {
+    private Ast.RelOp operador_relacional() {
+        listener.enterRule(Rule.OPERADOR_RELACIONAL, current);
+        Ast.RelOp op = null;
         if (check(OP_MENOR) || check(OP_MAYOR) || check(OP_IGUAL_IGUAL)) {
+            op = (peekType() == OP_MENOR) ? Ast.RelOp.MENOR
+                    : (peekType() == OP_MAYOR) ? Ast.RelOp.MAYOR : Ast.RelOp.IGUAL;
             advance();
         } else {
-            error(peek(), "Operador relacional inválido.",
-                    "Se esperaba '<', '>' o '=='.");
+            error("Se esperaba '<', '>' o '=='.");
         }
+        listener.exitRule(Rule.OPERADOR_RELACIONAL, current);
+        return op;
     }
 
     // CORRECCIÓN EN ACCION_UNICA_SI para predicción de asignación
     // En accion_unica_si, la parte de SALIDA también necesita punto.
-    private void accion_unica_si() {
+    private Ast.Statement accion_unica_si() {
+        listener.enterRule(Rule.ACCION_UNICA_SI, current);
+        Ast.Statement action = null;
         if (check(SALIDA_KEYWORD)) {
             consume(SALIDA_KEYWORD, "");
-            valor_salida();
+            action = new Ast.Output(valor_salida());
             consume(PUNTO, "Se esperaba '.' para terminar la acción 'SALIDA' dentro del 'SI'.");
             // Aquí no consumimos EOLs opcionales porque la estructura del SI es más rígida
             // y no es una lista de sentencias de alto nivel.
-        } else if (check(ID) && (current + 1 < tokens.size() && tokens.get(current + 1).type == ASIGNACION)) {
-            asignacion_stmt(); // asignacion_stmt ya maneja sus EOLs opcionales
+        } else if (check(ID) && peekNextType() == ASIGNACION) {
+            action = asignacion_stmt(); // asignacion_stmt ya maneja sus EOLs opcionales
         } else {
-            error(peek(), "Acción inválida después de 'SI (...)'.",
-                    "Se esperaba una sentencia 'SALIDA ...' o una asignación 'ID = ...'.");
+            error("Se esperaba una sentencia 'SALIDA ...' o una asignación 'ID = ...'.");
         }
+        listener.exitRule(Rule.ACCION_UNICA_SI, current);
+        return action;
     }
 
     // Método para consumir EOLs opcionales entre sentencias o al final de bloques.
@@ -246,68 +496,98 @@ public class Parser {
     // ... (expresion_aritmetica, termino, factor se mantienen como en TU original)
     // Expresiones aritméticas y sus componentes (termino, factor)
     // deben ser sensibles a EOLs inesperados.
-    private void expresion_aritmetica() {
-        termino();
+    private Ast.Expr expresion_aritmetica() {
+        listener.enterRule(Rule.EXPRESION_ARITMETICA, current);
+        Ast.Expr expr = termino();
         while (match(OP_SUMA, OP_RESTA)) {
-            if (peek().type == EOL) {
-                throw error(peek(), "Expresión incompleta antes de salto de línea.",
-                        "Se esperaba un operando después de '" + previous().lexeme + "' pero se encontró un salto de línea.");
+            Ast.ArithOp op = (previousType() == OP_SUMA) ? Ast.ArithOp.SUMA : Ast.ArithOp.RESTA;
+            int line = previousLine();
+            int column = previousColumn();
+            if (peekType() == EOL) {
+                throw error("Se esperaba un operando después de '" + previous().lexeme + "' pero se encontró un salto de línea.");
             }
-            termino();
+            expr = new Ast.Binary(op, expr, termino(), line, column);
         }
+        listener.exitRule(Rule.EXPRESION_ARITMETICA, current);
+        return expr;
     }
 
-    private void termino() {
-        factor();
+    private Ast.Expr termino() {
+        listener.enterRule(Rule.TERMINO, current);
+        Ast.Expr expr = factor();
         while (match(OP_MULT, OP_DIV)) {
-            if (peek().type == EOL) {
-                throw error(peek(), "Expresión incompleta antes de salto de línea.",
-                        "Se esperaba un operando después de '" + previous().lexeme + "' pero se encontró un salto de línea.");
+            Ast.ArithOp op = (previousType() == OP_MULT) ? Ast.ArithOp.MULT : Ast.ArithOp.DIV;
+            int line = previousLine();
+            int column = previousColumn();
+            if (peekType() == EOL) {
+                throw error("Se esperaba un operando después de '" + previous().lexeme + "' pero se encontró un salto de línea.");
             }
-            factor();
+            expr = new Ast.Binary(op, expr, factor(), line, column);
         }
+        listener.exitRule(Rule.TERMINO, current);
+        return expr;
     }
 
-    private void factor() {
+    private Ast.Expr factor() {
+        listener.enterRule(Rule.FACTOR, current);
+        Ast.Expr expr = null;
         if (check(ID)) {
-            Token idToken = peek();
-            checkVariableInitialized(idToken);
+            expr = symbols.var(checkVariableInitialized());
             consume(ID, "");
         } else if (check(NUMERO_ENTERO)) {
+            expr = new Ast.Num(peekIntLiteral());
             consume(NUMERO_ENTERO, "");
         } else if (check(PAREN_IZQ)) {
             consume(PAREN_IZQ, "");
-            expresion_aritmetica();
+            expr = expresion_aritmetica();
             consume(PAREN_DER, "Se esperaba ')' para cerrar la expresión entre paréntesis.");
         } else {
-            error(peek(), "Expresión aritmética malformada.",
-                    "Se esperaba un ID, un número, o una expresión entre paréntesis '(...)'.");
+            error("Se esperaba un ID, un número, o una expresión entre paréntesis '(...)'.");
         }
+        listener.exitRule(Rule.FACTOR, current);
+        return expr;
     }
 
     // ---- Métodos de ayuda del Parser (TU CÓDIGO ORIGINAL) ----
-    private Token consume(Token.TokenType type, String message) {
+    private void consume(Token.TokenType type, String message) {
         // Si esperamos un tipo X, y encontramos EOL, es un tipo de error específico.
-        if (peek().type == EOL && type != EOL && type != EOF /* y otros donde EOL es ok */) {
-            throw error(peek(), "Salto de línea inesperado.",
-                    "Se esperaba '" + type + "' para continuar/terminar la sentencia, pero se encontró un salto de línea. " + message);
+        if (peekType() == EOL && type != EOL && type != EOF /* y otros donde EOL es ok */) {
+            throw error("Se esperaba '" + type + "' para continuar/terminar la sentencia, pero se encontró un salto de línea. " + message);
         }
         if (check(type)) {
-            return advance();
+            advance();
+            return;
+        }
+        throw error(message);
+    }
+
+    // Error sintáctico en el token actual.
+    private SyntaxError error(String message) {
+        Diagnostic diagnostic = diagnosticAtCurrent(Diagnostic.Kind.SYNTAX, Diagnostic.Key.MESSAGE, message);
+        if (log != null) {
+            log.add(ParseLog.SYNTAX_ERROR, current - logBase, message);
+        } else {
+            report(diagnostic);
         }
-        throw error(peek(), message, message);
+        return new SyntaxError(diagnostic);
     }
 
-    private SyntaxError error(Token token, String generalMessage, String specificMessageToUser) {
-        SyntaxError e = new SyntaxError(token, generalMessage, specificMessageToUser);
-        errors.add(e.getMessage());
-        return e;
+    // Registra un error; al llegar a maxErrors corta el parse desde acá, sin
+    // pasar por la recuperación de quien lo reportó.
+    private void report(Diagnostic diagnostic) {
+        diagnostics.add(diagnostic);
+        if (maxErrors > 0 && diagnostics.size() >= maxErrors) {
+            errorLimitReached = true;
+            throw new SyntaxError(diagnostic);
+        }
     }
 
-    private SemanticError semanticError(Token token, String generalMessage, String specificMessageToUser) {
-        SemanticError e = new SemanticError(token, generalMessage, specificMessageToUser);
-        errors.add(e.getMessage());
-        return e;
+    // Diagnóstico sobre el token actual; en modo buffer no materializa el Token.
+    private Diagnostic diagnosticAtCurrent(Diagnostic.Kind kind, Diagnostic.Key key, Object... rest) {
+        if (buffer != null) {
+            return Diagnostic.at(kind, buffer, Math.min(current, buffer.size() - 1), key, rest);
+        }
+        return Diagnostic.at(kind, peek(), key, rest);
     }
 
     private boolean match(Token.TokenType... types) {
@@ -322,24 +602,35 @@ public class Parser {
 
     private boolean check(Token.TokenType type) {
         if (isAtEnd()) {
-            // Si estamos al final (isAtEnd es true, lo que implica peek().type == EOF),
+            // Si estamos al final (isAtEnd es true, lo que implica peekType() == EOF),
             // entonces check(EOF) debe ser true.
             // Para cualquier otro tipo, check(OTRO_TIPO) debe ser false.
             return type == EOF;
         }
         // Si no estamos al final, simplemente compara el tipo del token actual.
-        return peek().type == type;
+        return peekType() == type;
     }
 
-    private Token advance() {
+    private void advance() {
         if (!isAtEnd()) {
+            listener.tokenConsumed(current, peekType());
             current++;
+            if (tokenSource != null) {
+                previousToken = currentToken;
+                currentToken = (nextToken != null) ? nextToken : tokenSource.nextToken();
+                nextToken = null;
+            }
         }
-        return previous();
     }
 
     // isAtEnd() DEBE ser robusto
     private boolean isAtEnd() {
+        if (tokenSource != null) {
+            return currentToken.type == EOF;
+        }
+        if (buffer != null) {
+            return current >= buffer.size() || buffer.type(current) == EOF;
+        }
         // Estamos al final si el token actual que 'peek' vería es EOF.
         // Asumimos que 'peek()' es seguro y 'current' no se pasa de los límites
         // antes de esta llamada, o que peek() maneja el límite.
@@ -351,10 +642,41 @@ public class Parser {
             System.err.println("ADVERTENCIA PARSER: isAtEnd() llamado con current fuera de límites.");
             return true; // O lanza una excepción si esto es un estado irrecuperable.
         }
-        return peek().type == EOF; // La definición más directa
+        return peekType() == EOF; // La definición más directa
+    }
+
+    // Tipo del token actual; en modo buffer no crea ningún objeto.
+    private Token.TokenType peekType() {
+        if (tokenSource != null) {
+            return currentToken.type;
+        }
+        if (buffer != null) {
+            return buffer.type(Math.min(current, buffer.size() - 1));
+        }
+        return peek().type;
+    }
+
+    private Token.TokenType previousType() {
+        if (buffer != null) {
+            return buffer.type(Math.max(current - 1, 0));
+        }
+        return previous().type;
+    }
+
+    private Token.TokenType peekNextType() {
+        if (buffer != null) {
+            return buffer.type(Math.min(current + 1, buffer.size() - 1));
+        }
+        return peekNext().type;
     }
 
     private Token peek() {
+        if (tokenSource != null) {
+            return currentToken;
+        }
+        if (buffer != null) {
+            return buffer.get(Math.min(current, buffer.size() - 1));
+        }
         if (current >= tokens.size()) {
             // Esto indica un error en la lógica del parser si current se pasa
             // del tamaño de la lista de tokens (que incluye EOF).
@@ -366,7 +688,30 @@ public class Parser {
         return tokens.get(current);
     }
 
+    // Un token de anticipación (el que sigue a peek()); EOF si ya no hay más.
+    private Token peekNext() {
+        if (tokenSource != null) {
+            if (currentToken.type == EOF) {
+                return currentToken;
+            }
+            if (nextToken == null) {
+                nextToken = tokenSource.nextToken();
+            }
+            return nextToken;
+        }
+        if (current + 1 < tokens.size()) {
+            return tokens.get(current + 1);
+        }
+        return tokens.get(tokens.size() - 1);
+    }
+
     private Token previous() {
+        if (tokenSource != null) {
+            return (previousToken != null) ? previousToken : currentToken;
+        }
+        if (buffer != null) {
+            return buffer.get(Math.max(current - 1, 0));
+        }
         // Asegurarse de no ir antes del inicio
         if (current == 0) {
             return tokens.get(0); // O manejar de otra forma, pero no debería llamarse con current=0 si se usa bien
@@ -374,39 +719,111 @@ public class Parser {
         return tokens.get(current - 1);
     }
 
-    private void checkVariableInitialized(Token name) {
-        if (!declaredVariables.contains(name.lexeme)) {
-            throw semanticError(name,
-                    "Variable no inicializada: " + name.lexeme,
-                    "La variable '" + name.lexeme + "' se usa antes de asignarle un valor.");
+    // Verifica el ID actual y devuelve su slot. En modo buffer se busca sobre el
+    // código fuente sin crear el lexema; el Token solo se materializa si hay que
+    // reportar el error.
+    private int checkVariableInitialized() {
+        if (log != null) {
+            // Depende de las sentencias anteriores: se verifica en ParseLog.replay()
+            int start = buffer.start(current);
+            int slot = symbols.intern(buffer.getSource(), start, start + buffer.length(current));
+            log.add(ParseLog.USE, current - logBase, slot);
+            return slot;
+        }
+        int slot;
+        if (buffer != null) {
+            int start = buffer.start(current);
+            slot = symbols.slotOf(buffer.getSource(), start, start + buffer.length(current));
+        } else {
+            slot = symbols.slotOf(peek().lexeme);
+        }
+        if (!symbols.isAssigned(slot)) {
+            Diagnostic diagnostic = diagnosticAtCurrent(Diagnostic.Kind.SEMANTIC,
+                    uninitializedVariableKey(symbols.isConditionallyAssigned(slot)));
+            report(diagnostic);
+            throw new SemanticError(diagnostic);
+        }
+        return slot;
+    }
+
+    static Diagnostic.Key uninitializedVariableKey(boolean conditionallyAssigned) {
+        return conditionallyAssigned
+                ? Diagnostic.Key.CONDITIONALLY_ASSIGNED_VARIABLE
+                : Diagnostic.Key.UNINITIALIZED_VARIABLE;
+    }
+
+    private void markAssigned(int slot, int nameToken) {
+        if (log != null) {
+            log.add(ParseLog.ASSIGN, nameToken - logBase, slot);
+        } else {
+            symbols.markAssigned(slot);
+        }
+    }
+
+    // Interna el ID recién consumido.
+    private int internPrevious() {
+        if (buffer != null) {
+            int index = Math.max(current - 1, 0);
+            int start = buffer.start(index);
+            return symbols.intern(buffer.getSource(), start, start + buffer.length(index));
         }
+        return symbols.intern(previous().lexeme);
+    }
+
+    // Acceso a literal y posición sin materializar el Token en modo buffer.
+    private int previousLine() {
+        return (buffer != null) ? buffer.line(Math.max(current - 1, 0)) : previous().line;
+    }
+
+    private int previousColumn() {
+        return (buffer != null) ? buffer.column(Math.max(current - 1, 0)) : previous().column;
+    }
+
+    private int peekIntLiteral() {
+        return (buffer != null) ? buffer.intLiteral(current) : (Integer) peek().literal;
+    }
+
+    private String peekStringLiteral() {
+        return (buffer != null) ? (String) buffer.literal(current) : (String) peek().literal;
     }
 
     // En Parser.java
 private void synchronizeToStatementBoundary() {
-    System.out.println("DEBUG: Entrando a synchronizeToStatementBoundary(), peek() al entrar=" + peek().type); // DEBUG
+    int recoveryStart = current;
+    skipToStatementBoundary();
+    listener.recovery(recoveryStart, current - recoveryStart);
+    if (metrics != null) {
+        metrics.recordRecovery(current - recoveryStart);
+    }
+}
+
+private void skipToStatementBoundary() {
     advance(); // Consumir el token erróneo
-    System.out.println("DEBUG:  synchronize: después de consumir token erróneo, peek()=" + peek().type); // DEBUG
 
     int recoveryLoopGuard = 0; // Para prevenir bucles infinitos teóricos
-    final int MAX_RECOVERY_ATTEMPTS = tokens.size() + 5; // Un límite generoso
+    // Un límite generoso; en modo streaming no se conoce el total de tokens.
+    final int MAX_RECOVERY_ATTEMPTS = (tokens != null) ? tokens.size() + 5
+            : (buffer != null) ? buffer.size() + 5 : Integer.MAX_VALUE;
 
     while (!isAtEnd()) {
-        System.out.println("DEBUG:  synchronize: en bucle, peek()=" + peek().type + ", previous()=" + previous().type); // DEBUG
         recoveryLoopGuard++;
         if (recoveryLoopGuard > MAX_RECOVERY_ATTEMPTS) {
             System.err.println("ERROR PARSER: Posible bucle infinito en synchronizeToStatementBoundary(). Abortando sincronización.");
-            errors.add("[ERROR INTERNO] Falla en la recuperación de errores. Demasiados tokens consumidos.");
+            String message = "[ERROR INTERNO] Falla en la recuperación de errores. Demasiados tokens consumidos.";
+            if (log != null) {
+                log.add(ParseLog.INTERNAL_ERROR, current - logBase, message);
+            } else {
+                report(Diagnostic.internal(message));
+            }
             // Forzar salida del bucle para evitar congelamiento real
             while(!isAtEnd()) advance(); // Consumir todo lo que queda
             return;
         }
 
-        if (previous().type == PUNTO) {
-            System.out.println("DEBUG:  synchronize: encontrado PUNTO en previous. Retornando."); // DEBUG
+        if (previousType() == PUNTO) {
             return;
         }
-        if (previous().type == EOL && peek().type != LLAVE_DER && peek().type != EOF) {
+        if (previousType() == EOL && peekType() != LLAVE_DER && peekType() != EOF) {
              // Si el anterior fue EOL, y el actual no es un terminador de bloque,
              // podríamos considerar esto un punto de sincronización si las sentencias
              // pueden estar separadas solo por EOL (aunque SimpleCalc requiere PUNTO).
@@ -414,21 +831,18 @@ private void synchronizeToStatementBoundary() {
         }
 
 
-        switch (peek().type) {
+        switch (peekType()) {
             case ENTRADA_KEYWORD:
             case SALIDA_KEYWORD:
             case SI_KEYWORD:
             // No añadir ID aquí como punto de sincronización porque podría ser el inicio de otro error
             case LLAVE_DER:
             case EOF: // Si llegamos a EOF, hemos terminado de sincronizar
-                System.out.println("DEBUG:  synchronize: encontrado " + peek().type + ". Retornando."); // DEBUG
                 return;
             default:
                 // Sigue avanzando
         }
-        System.out.println("DEBUG:  synchronize: avanzando desde " + peek().type); // DEBUG
         advance();
     }
-    System.out.println("DEBUG: Salida de synchronizeToStatementBoundary() porque isAtEnd() es true."); // DEBUG
 }
 }
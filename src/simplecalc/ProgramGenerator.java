@@ -0,0 +1,341 @@
+// ProgramGenerator.java
+package simplecalc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Random;
+
+// Generador de programas SimpleCalc sintéticos para pruebas de carga y de
+// escala. Sigue la gramática del Parser:
+//
+//   OPERACION ENTRADA { (asignación | ENTRADA | SALIDA | SI (...) acción)* } SALIDA
+//
+// y respeta la regla semántica de variables: una expresión solo lee variables
+// que ya recibieron valor fuera de un SI, así que sin errores inyectados el
+// programa siempre es válido.
+//
+// Es reproducible: la misma semilla y las mismas opciones dan el mismo texto
+// (java.util.Random tiene el algoritmo fijado por la especificación). La salida
+// se escribe sentencia por sentencia, así que el tamaño no está limitado por la
+// memoria.
+//
+// Perillas: cantidad de sentencias o bytes aproximados, profundidad máxima de
+// las expresiones, cantidad de variables distintas y proporción de sentencias
+// con un error léxico o sintáctico inyectado.
+public class ProgramGenerator {
+    private final Random random;
+    private long statements = 1000;
+    private long targetBytes = 0;  // 0 = se usa 'statements'
+    private int maxDepth = 3;
+    private int variableCount = 26;
+    private double errorRate = 0.0;
+
+    private final BitSet assigned = new BitSet(); // Variables con valor fuera de un SI
+    private final StringBuilder line = new StringBuilder(256);
+    private long bytesWritten;
+    private long statementsWritten;
+    private long injectedErrors;
+
+    public ProgramGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    // Cantidad de sentencias del cuerpo (sin contar la ENTRADA inicial).
+    public ProgramGenerator setStatements(long statements) {
+        if (statements < 0) {
+            throw new IllegalArgumentException("La cantidad de sentencias no puede ser negativa: " + statements);
+        }
+        this.statements = statements;
+        this.targetBytes = 0;
+        return this;
+    }
+
+    // En lugar de una cantidad de sentencias, generar hasta llegar a unos 'bytes'.
+    public ProgramGenerator setTargetBytes(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("El tamaño debe ser positivo: " + bytes);
+        }
+        this.targetBytes = bytes;
+        return this;
+    }
+
+    // Profundidad máxima del árbol de cada expresión aritmética (0 = solo operandos).
+    public ProgramGenerator setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("La profundidad no puede ser negativa: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public ProgramGenerator setVariableCount(int variableCount) {
+        if (variableCount < 1) {
+            throw new IllegalArgumentException("Se necesita al menos una variable: " + variableCount);
+        }
+        this.variableCount = variableCount;
+        return this;
+    }
+
+    // Proporción (0..1) de sentencias con un error inyectado.
+    public ProgramGenerator setErrorRate(double errorRate) {
+        if (!(errorRate >= 0.0 && errorRate <= 1.0)) {
+            throw new IllegalArgumentException("La proporción de errores debe estar entre 0 y 1: " + errorRate);
+        }
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getStatementsWritten() {
+        return statementsWritten;
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors;
+    }
+
+    // Escribe un programa completo en 'out' (no lo cierra).
+    public void generate(Writer out) throws IOException {
+        assigned.clear();
+        bytesWritten = 0;
+        statementsWritten = 0;
+        injectedErrors = 0;
+
+        emit(out, "OPERACION ENTRADA {\n");
+        // La primera variable siempre tiene valor, para que haya qué leer desde el principio
+        emit(out, " ENTRADA V0.\n");
+        assigned.set(0);
+        while (targetBytes > 0 ? bytesWritten < targetBytes : statementsWritten < statements) {
+            line.setLength(0);
+            line.append(' ');
+            statement();
+            if (random.nextDouble() < errorRate) {
+                injectError();
+            }
+            line.append('\n');
+            emit(out, line);
+            statementsWritten++;
+        }
+        emit(out, "}\nSALIDA\n");
+        out.flush();
+    }
+
+    public String generate() {
+        StringWriter out = new StringWriter();
+        try {
+            generate(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringWriter no lanza
+        }
+        return out.toString();
+    }
+
+    private void emit(Writer out, CharSequence text) throws IOException {
+        out.append(text);
+        bytesWritten += text.length(); // Todo el texto generado es ASCII
+    }
+
+    // ---- Sentencias ----
+
+    private void statement() {
+        int kind = random.nextInt(100);
+        if (kind < 50) {
+            int target = random.nextInt(variableCount);
+            assignment(target);
+            assigned.set(target);
+        } else if (kind < 65) {
+            line.append("SALIDA ");
+            outputValue();
+            line.append('.');
+        } else if (kind < 75) {
+            int target = random.nextInt(variableCount);
+            line.append("ENTRADA V").append(target).append('.');
+            assigned.set(target);
+        } else {
+            // SI: lo que se asigna en la acción no cuenta como asignado después
+            line.append("SI (");
+            conditionOperand();
+            line.append(' ').append(random.nextInt(3) == 0 ? "==" : random.nextBoolean() ? "<" : ">").append(' ');
+            conditionOperand();
+            line.append(") ");
+            if (random.nextBoolean()) {
+                line.append("SALIDA ");
+                outputValue();
+                line.append('.');
+            } else {
+                assignment(random.nextInt(variableCount));
+            }
+        }
+    }
+
+    private void assignment(int target) {
+        line.append('V').append(target).append(" = ");
+        expression(random.nextInt(maxDepth + 1));
+        line.append('.');
+    }
+
+    private void outputValue() {
+        int kind = random.nextInt(3);
+        if (kind == 0) {
+            line.append('"');
+            int length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                line.append((char) ('a' + random.nextInt(26)));
+            }
+            line.append('"');
+        } else if (kind == 1) {
+            line.append(random.nextInt(1000));
+        } else {
+            variable();
+        }
+    }
+
+    private void conditionOperand() {
+        if (random.nextBoolean()) {
+            variable();
+        } else {
+            line.append(random.nextInt(1000));
+        }
+    }
+
+    // ---- Expresiones ----
+
+    private void expression(int depth) {
+        if (depth == 0) {
+            operand(false);
+            return;
+        }
+        int kind = random.nextInt(4);
+        if (kind == 0) {
+            line.append('(');
+            expression(depth - 1);
+            line.append(')');
+        } else {
+            expression(random.nextInt(depth));
+            char op = "+-*/".charAt(random.nextInt(4));
+            line.append(' ').append(op).append(' ');
+            if (op == '/') {
+                operand(true); // Divisor: nunca un 0 literal
+            } else {
+                expression(random.nextInt(depth));
+            }
+        }
+    }
+
+    private void operand(boolean divisor) {
+        if (random.nextBoolean()) {
+            variable();
+        } else {
+            line.append(divisor ? 1 + random.nextInt(999) : random.nextInt(1000));
+        }
+    }
+
+    // Una variable que ya tiene valor (V0 siempre la tiene).
+    private void variable() {
+        int candidate = random.nextInt(variableCount);
+        line.append('V').append(assigned.get(candidate) ? candidate : assigned.previousSetBit(candidate));
+    }
+
+    // ---- Errores inyectados ----
+
+    // Estropea la sentencia ya armada en 'line' (que empieza con ' ' y termina en '.').
+    private void injectError() {
+        injectedErrors++;
+        int end = line.length() - 1; // El '.'
+        int at = 1 + random.nextInt(end - 1);
+        switch (random.nextInt(6)) {
+            case 0: // Léxico: carácter no reconocido
+                line.insert(at, " @ ");
+                break;
+            case 1: // Léxico: operador relacional no permitido
+                line.insert(at, " <= ");
+                break;
+            case 2: // Léxico: cadena sin cerrar hasta el fin de línea
+                line.insert(end, " \"sin cerrar");
+                break;
+            case 3: // Sintáctico: falta el '.' final
+                line.setLength(end);
+                break;
+            case 4: // Sintáctico: operador sin operando
+                line.insert(end, " +");
+                break;
+            default: // Sintáctico: paréntesis sin cerrar
+                line.insert(at, " (");
+                break;
+        }
+    }
+
+    // ---- Línea de comandos ----
+
+    // simplecalc --generate [--seed=N] [--statements=N | --bytes=N] [--depth=N]
+    //                       [--variables=N] [--errors=P] [--output=ARCHIVO]
+    public static int run(String[] args) {
+        long seed = 1;
+        String output = null;
+        ProgramGenerator generator;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(arg.substring("--seed=".length()));
+                }
+            }
+            generator = new ProgramGenerator(seed);
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                String name = (eq < 0) ? arg : arg.substring(0, eq);
+                String value = (eq < 0) ? "" : arg.substring(eq + 1);
+                switch (name) {
+                    case "--seed":
+                        break;
+                    case "--statements":
+                        generator.setStatements(Long.parseLong(value));
+                        break;
+                    case "--bytes":
+                        generator.setTargetBytes(Long.parseLong(value));
+                        break;
+                    case "--depth":
+                        generator.setMaxDepth(Integer.parseInt(value));
+                        break;
+                    case "--variables":
+                        generator.setVariableCount(Integer.parseInt(value));
+                        break;
+                    case "--errors":
+                        generator.setErrorRate(Double.parseDouble(value));
+                        break;
+                    case "--output":
+                        output = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opción desconocida: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) { // Incluye NumberFormatException
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Uso: simplecalc --generate [--seed=N] [--statements=N | --bytes=N] [--depth=N]"
+                    + " [--variables=N] [--errors=P] [--output=ARCHIVO]");
+            return BatchValidator.EXIT_ERROR;
+        }
+
+        try (Writer out = (output != null)
+                ? Files.newBufferedWriter(Path.of(output), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+            generator.generate(out);
+        } catch (IOException e) {
+            System.err.println("Error de E/S: " + e.getMessage());
+            return BatchValidator.EXIT_ERROR;
+        }
+        System.err.printf("%d sentencias, %d bytes, %d errores inyectados (semilla %d)%n",
+                generator.getStatementsWritten(), generator.getBytesWritten(), generator.getInjectedErrors(), seed);
+        return BatchValidator.EXIT_VALID;
+    }
+}
@@ -0,0 +1,97 @@
+// RingBufferParseTracer.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Guarda los últimos N eventos del Parser en arreglos circulares, sin crear
+// objetos por evento ni escribir en la consola. Pensado para inspeccionar
+// después de un fallo qué estaba haciendo el Parser.
+public class RingBufferParseTracer implements ParseListener {
+    private static final byte ENTER = 0;
+    private static final byte EXIT = 1;
+    private static final byte TOKEN = 2;
+    private static final byte RECOVERY = 3;
+
+    private static final Rule[] RULES = Rule.values();
+    private static final Token.TokenType[] TYPES = Token.TokenType.values();
+
+    private final byte[] kinds;
+    private final int[] args;        // Regla, tipo de token o inicio de la recuperación
+    private final int[] tokenIndexes;
+    private long count = 0;          // Total de eventos registrados desde el último clear()
+
+    public RingBufferParseTracer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva: " + capacity);
+        }
+        kinds = new byte[capacity];
+        args = new int[capacity];
+        tokenIndexes = new int[capacity];
+    }
+
+    @Override
+    public void enterRule(Rule rule, int tokenIndex) {
+        record(ENTER, rule.ordinal(), tokenIndex);
+    }
+
+    @Override
+    public void exitRule(Rule rule, int tokenIndex) {
+        record(EXIT, rule.ordinal(), tokenIndex);
+    }
+
+    @Override
+    public void tokenConsumed(int tokenIndex, Token.TokenType type) {
+        record(TOKEN, type.ordinal(), tokenIndex);
+    }
+
+    @Override
+    public void recovery(int startTokenIndex, int skippedTokens) {
+        record(RECOVERY, skippedTokens, startTokenIndex);
+    }
+
+    private void record(byte kind, int arg, int tokenIndex) {
+        int slot = (int) (count % kinds.length);
+        kinds[slot] = kind;
+        args[slot] = arg;
+        tokenIndexes[slot] = tokenIndex;
+        count++;
+    }
+
+    public long getTotalEvents() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    // Eventos retenidos, del más antiguo al más reciente, ya formateados.
+    public List<String> getEvents() {
+        int retained = (int) Math.min(count, kinds.length);
+        List<String> events = new ArrayList<>(retained);
+        for (long seq = count - retained; seq < count; seq++) {
+            int slot = (int) (seq % kinds.length);
+            events.add(format(seq, kinds[slot], args[slot], tokenIndexes[slot]));
+        }
+        return events;
+    }
+
+    private static String format(long seq, byte kind, int arg, int tokenIndex) {
+        switch (kind) {
+            case ENTER:
+                return String.format("#%d -> %s (token %d)", seq, RULES[arg], tokenIndex);
+            case EXIT:
+                return String.format("#%d <- %s (token %d)", seq, RULES[arg], tokenIndex);
+            case TOKEN:
+                return String.format("#%d consume %s (token %d)", seq, TYPES[arg], tokenIndex);
+            default:
+                return String.format("#%d recuperación: %d tokens descartados desde el token %d", seq, arg, tokenIndex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", getEvents());
+    }
+}
@@ -0,0 +1,26 @@
+// SalidaSink.java
+package simplecalc;
+
+import java.util.List;
+
+// Destino de los valores que producen las sentencias SALIDA durante la ejecución.
+public interface SalidaSink {
+    void emit(int value);
+
+    void emit(String text);
+
+    // Agrega cada valor, convertido a texto, a la lista dada.
+    static SalidaSink collectingTo(List<String> values) {
+        return new SalidaSink() {
+            @Override
+            public void emit(int value) {
+                values.add(Integer.toString(value));
+            }
+
+            @Override
+            public void emit(String text) {
+                values.add(text);
+            }
+        };
+    }
+}
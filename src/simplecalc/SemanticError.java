@@ -2,21 +2,17 @@
 package simplecalc;
 
 public class SemanticError extends RuntimeException {
-    public final Token token;
-    public final String specificMessage;
+    public final Diagnostic diagnostic;
 
-    public SemanticError(Token token, String message, String specificMessage) {
-        super(message);
-        this.token = token;
-        this.specificMessage = specificMessage;
+    public SemanticError(Diagnostic diagnostic) {
+        // Se usa para cortar el análisis, no para depurar: sin traza de pila, que
+        // es lo más caro de crear la excepción en programas con muchos errores
+        super(null, null, false, false);
+        this.diagnostic = diagnostic;
     }
 
     @Override
     public String getMessage() {
-        if (token != null) {
-            return String.format("[Línea %d, Col %d] Error semántico cerca de '%s': %s",
-                    token.line, token.column, token.lexeme, specificMessage);
-        }
-        return specificMessage;
+        return diagnostic.format();
     }
-}
\ No newline at end of file
+}
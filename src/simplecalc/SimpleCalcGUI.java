@@ -2,21 +2,48 @@
 package simplecalc;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Highlighter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SimpleCalcGUI extends JFrame {
     private JTextArea inputArea;
-    private JTextArea outputArea; // Para tokens y errores
+    private JTextArea outputArea; // Para errores y resultado
+    private JTable tokenTable;
+    private final TokenTableModel tokenTableModel = new TokenTableModel();
+    private JComboBox<Object> tokenFilterBox;
     private JLabel statusLabel;
     private Highlighter.HighlightPainter errorPainter;
 
+    // Validación en vivo: cada edición del documento se aplica al analizador
+    // incremental y los diagnósticos se refrescan poco después de dejar de escribir.
+    private JCheckBox liveCheckBox;
+    private final IncrementalAnalyzer liveAnalyzer = new IncrementalAnalyzer();
+    private Timer liveRefreshTimer;
+
+    // "Procesar Código" corre fuera del EDT, en un hilo virtual. Al empezar un
+    // análisis se cancela el anterior, y solo el más reciente publica su resultado.
+    private final ExecutorService analysisExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private Future<?> currentAnalysis;
+    private int analysisGeneration = 0; // Solo se lee y escribe en el EDT
+
+    // Lo que produce un análisis completo, listo para mostrarse de una vez.
+    private record AnalysisResult(TokenBuffer tokens, String output, List<Diagnostic> highlightedErrors,
+                                  boolean valid) {
+    }
+
     public SimpleCalcGUI() {
         setTitle("SimpleCalc IDE");
         setSize(800, 600);
@@ -31,7 +58,7 @@ public class SimpleCalcGUI extends JFrame {
         // Paneles
         JPanel mainPanel = new JPanel(new BorderLayout(5, 5));
         JPanel topPanel = new JPanel(new BorderLayout(5, 5));
-        JPanel centerPanel = new JPanel(new GridLayout(1, 1)); // Para salida
+        JPanel centerPanel = new JPanel(new GridLayout(1, 2, 5, 5)); // Tokens y salida
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
         // Componentes
@@ -46,6 +73,35 @@ public class SimpleCalcGUI extends JFrame {
         JScrollPane outputScrollPane = new JScrollPane(outputArea);
         outputScrollPane.setBorder(BorderFactory.createTitledBorder("Salida del Compilador"));
 
+        // Tabla de tokens: el modelo solo formatea las filas visibles
+        tokenTable = new JTable(tokenTableModel);
+        tokenTable.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        tokenTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        tokenTable.setToolTipText("Doble clic para ir al token en el código");
+        tokenTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    jumpToToken(tokenTable.rowAtPoint(e.getPoint()));
+                }
+            }
+        });
+        Object[] filterChoices = new Object[Token.TokenType.values().length + 1];
+        filterChoices[0] = "Todos los tipos";
+        System.arraycopy(Token.TokenType.values(), 0, filterChoices, 1, filterChoices.length - 1);
+        tokenFilterBox = new JComboBox<>(filterChoices);
+        tokenFilterBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Object choice = tokenFilterBox.getSelectedItem();
+                tokenTableModel.setTypeFilter((choice instanceof Token.TokenType) ? (Token.TokenType) choice : null);
+            }
+        });
+        JPanel tokenPanel = new JPanel(new BorderLayout(5, 5));
+        tokenPanel.setBorder(BorderFactory.createTitledBorder("Tokens Reconocidos"));
+        tokenPanel.add(tokenFilterBox, BorderLayout.NORTH);
+        tokenPanel.add(new JScrollPane(tokenTable), BorderLayout.CENTER);
+
 
         JButton processButton = new JButton("Procesar Código");
         processButton.addActionListener(new ActionListener() {
@@ -55,12 +111,52 @@ public class SimpleCalcGUI extends JFrame {
             }
         });
 
+        liveCheckBox = new JCheckBox("Validación en vivo");
+        liveCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (liveCheckBox.isSelected()) {
+                    liveAnalyzer.analyze(inputArea.getText());
+                    showLiveDiagnostics();
+                } else {
+                    inputArea.getHighlighter().removeAllHighlights();
+                }
+            }
+        });
+        liveRefreshTimer = new Timer(150, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showLiveDiagnostics();
+            }
+        });
+        liveRefreshTimer.setRepeats(false);
+        inputArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                documentEdited(e.getOffset(), 0, e.getLength());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                documentEdited(e.getOffset(), e.getLength(), 0);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Solo cambios de atributos; el texto es el mismo
+            }
+        });
+
         statusLabel = new JLabel("Listo.");
 
         // Layout
+        JPanel buttonPanel = new JPanel(new BorderLayout(5, 5));
+        buttonPanel.add(processButton, BorderLayout.CENTER);
+        buttonPanel.add(liveCheckBox, BorderLayout.EAST);
         topPanel.add(inputScrollPane, BorderLayout.CENTER);
-        topPanel.add(processButton, BorderLayout.SOUTH);
+        topPanel.add(buttonPanel, BorderLayout.SOUTH);
 
+        centerPanel.add(tokenPanel);
         centerPanel.add(outputScrollPane);
 
         bottomPanel.add(statusLabel);
@@ -78,40 +174,62 @@ public class SimpleCalcGUI extends JFrame {
     }
 
     private void processCode() {
-        String sourceCode = inputArea.getText();
-        outputArea.setText(""); // Limpiar salida anterior
-        inputArea.getHighlighter().removeAllHighlights(); // Limpiar resaltados de error anteriores
+        if (currentAnalysis != null) {
+            currentAnalysis.cancel(true);
+        }
+        final int generation = ++analysisGeneration;
+        final String sourceCode = inputArea.getText();
+        statusLabel.setText("Analizando...");
+        statusLabel.setForeground(Color.DARK_GRAY);
+        currentAnalysis = analysisExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final AnalysisResult result = analyze(sourceCode, generation);
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            publishAnalysis(generation, result);
+                        }
+                    });
+                } catch (CancellationException e) {
+                    // Lo reemplazó un análisis más reciente
+                }
+            }
+        });
+    }
 
+    // Corre en el hilo del análisis: no toca componentes de Swing salvo a través
+    // de reportProgress().
+    private AnalysisResult analyze(String sourceCode, int generation) {
         // 1. Análisis Léxico
-        Lexer lexer = new Lexer(sourceCode);
-        List<Token> tokens = lexer.scanTokens();
-        
+        reportProgress(generation, "Analizando: léxico...");
+        // Los códigos grandes se escanean por tramos en paralelo; el resultado es el mismo
+        TokenBuffer tokens = new ParallelLexer().scanTokenBuffer(sourceCode);
+        checkCancelled();
+
          System.out.println("----- TOKENS DEL LEXER (Total: " + tokens.size() + ") -----");
 
+        // La tabla de tokens la muestra tokenTable; aquí solo van errores y resultado
         StringBuilder sb = new StringBuilder();
-        sb.append("--- Tokens Reconocidos ---\n");
-        sb.append(Token.getTableHeader()).append("\n");
-        for (Token token : tokens) {
-            sb.append(token.toString()).append("\n");
-        }
-        sb.append(Token.getTableFooter()).append("\n\n");
+        sb.append("Tokens reconocidos: ").append(tokens.size()).append("\n\n");
 
         // Filtrar tokens de error léxico para mostrar en la lista de errores
-        List<String> lexicalErrors = tokens.stream()
-                                           .filter(t -> t.type == Token.TokenType.ERROR)
-                                           .map(t -> String.format("[Línea %d, Col %d] Error Léxico: %s", t.line, t.column, t.lexeme))
-                                           .collect(Collectors.toList());
+        List<Diagnostic> lexicalErrors = Analysis.lexicalErrors(tokens);
 
         // 2. Análisis Sintáctico (y Semántico Básico)
-        Parser parser = new Parser(tokens); // Pasamos solo los tokens no-error o todos? El parser debería saber saltar errores
-        boolean syntaxValid = parser.parse();
-        List<String> syntaxAndSemanticErrors = parser.getErrors();
+        reportProgress(generation, "Analizando: sintáctico...");
+        // Igual que el léxico: los programas grandes se analizan por tramos en paralelo
+        ParallelParser parser = new ParallelParser();
+        boolean syntaxValid = parser.parse(tokens);
+        List<Diagnostic> syntaxAndSemanticErrors = parser.getDiagnostics();
+        checkCancelled();
 
 
-        // 3. Mostrar Resultados
+        // 3. Armar Resultados
         if (!lexicalErrors.isEmpty()) {
             sb.append("--- Errores Léxicos Detectados ---\n");
-            for (String err : lexicalErrors) {
+            for (Diagnostic err : lexicalErrors) {
                 sb.append(err).append("\n");
             }
             sb.append("\n");
@@ -119,69 +237,128 @@ public class SimpleCalcGUI extends JFrame {
 
         if (!syntaxAndSemanticErrors.isEmpty()) {
             sb.append("--- Errores Sintácticos/Semánticos Detectados ---\n");
-            for (String err : syntaxAndSemanticErrors) {
+            for (Diagnostic err : syntaxAndSemanticErrors) {
                 sb.append(err).append("\n");
-                // Intentar resaltar el error en el inputArea
-                // Esto requiere parsear la línea y columna del mensaje de error
-                 try {
-                    // Formato esperado: "[Línea L, Col C] Error..."
-                    if (err.startsWith("[")) {
-                        String locationPart = err.substring(1, err.indexOf("]"));
-                        String[] parts = locationPart.split(",");
-                        int line = Integer.parseInt(parts[0].replace("Línea ", "").trim());
-                        int col = Integer.parseInt(parts[1].replace("Col ", "").trim());
-                        highlightError(line, col);
-                    }
-                } catch (Exception ex) {
-                    // No se pudo parsear la ubicación del error del mensaje
-                    System.err.println("Error al intentar resaltar: " + ex.getMessage());
-                }
             }
             sb.append("\n");
         }
 
 
-        if (lexicalErrors.isEmpty() && syntaxValid) {
+        boolean valid = lexicalErrors.isEmpty() && syntaxValid;
+        if (valid) {
             sb.append(">>> El código es léxica y sintácticamente VÁLIDO según SimpleCalc. <<<\n");
+        } else {
+            sb.append(">>> El código contiene errores. <<<\n");
+        }
+        return new AnalysisResult(tokens, sb.toString(), syntaxAndSemanticErrors, valid);
+    }
+
+    // Un análisis cancelado deja de trabajar en el siguiente punto de control.
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private void reportProgress(final int generation, final String message) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == analysisGeneration) {
+                    statusLabel.setText(message);
+                }
+            }
+        });
+    }
+
+    // En el EDT: muestra el resultado en una sola actualización, si sigue siendo el último.
+    private void publishAnalysis(int generation, AnalysisResult result) {
+        if (generation != analysisGeneration) {
+            return;
+        }
+        currentAnalysis = null;
+        inputArea.getHighlighter().removeAllHighlights(); // Limpiar resaltados de error anteriores
+        for (Diagnostic err : result.highlightedErrors()) {
+            highlightError(err);
+        }
+        tokenTableModel.setTokens(result.tokens());
+        outputArea.setText(result.output());
+        outputArea.setCaretPosition(0); // Scroll al inicio
+        if (result.valid()) {
             statusLabel.setText("Resultado: VÁLIDO.");
             statusLabel.setForeground(new Color(0, 128, 0)); // Verde
         } else {
-            sb.append(">>> El código contiene errores. <<<\n");
             statusLabel.setText("Resultado: INVÁLIDO.");
             statusLabel.setForeground(Color.RED);
         }
+    }
+    
+    // Edición del documento: con la validación en vivo activa se aplica al
+    // analizador de inmediato (es barato) y se programa el refresco de la salida.
+    private void documentEdited(int offset, int removedLength, int insertedLength) {
+        if (!liveCheckBox.isSelected()) {
+            return;
+        }
+        liveAnalyzer.update(inputArea.getText(), offset, removedLength, insertedLength);
+        liveRefreshTimer.restart();
+    }
 
+    private void showLiveDiagnostics() {
+        if (!liveCheckBox.isSelected()) {
+            return;
+        }
+        inputArea.getHighlighter().removeAllHighlights();
+        TokenBuffer tokens = liveAnalyzer.getTokens();
+        StringBuilder sb = new StringBuilder();
+        for (Diagnostic err : Analysis.lexicalErrors(tokens)) {
+            sb.append(err).append("\n");
+        }
+        for (Diagnostic err : liveAnalyzer.getDiagnostics()) {
+            sb.append(err).append("\n");
+            highlightError(err);
+        }
+        boolean valid = tokens.errorCount() == 0 && liveAnalyzer.isValid();
+        if (valid) {
+            sb.append(">>> El código es léxica y sintácticamente VÁLIDO según SimpleCalc. <<<\n");
+        }
         outputArea.setText(sb.toString());
-        outputArea.setCaretPosition(0); // Scroll al inicio
+        outputArea.setCaretPosition(0);
+        statusLabel.setText(String.format("En vivo: %s (%d líneas re-escaneadas, %d de %d tramos re-analizados).",
+                valid ? "VÁLIDO" : "INVÁLIDO", liveAnalyzer.getRelexedLineCount(),
+                liveAnalyzer.getReparsedSegmentCount(), liveAnalyzer.getSegmentCount()));
+        statusLabel.setForeground(valid ? new Color(0, 128, 0) : Color.RED);
     }
-    
-    private void highlightError(int line, int col) {
-        try {
-            // Las líneas/columnas son 1-based, JTextArea es 0-based
-            int docLine = line - 1;
-            int docCol = col - 1;
-
-            int startOffset = inputArea.getLineStartOffset(docLine) + docCol;
-            // Resaltar un solo carácter o una pequeña región.
-            // Para hacerlo más útil, necesitaríamos el Token real del error y su longitud.
-            // Por ahora, resaltamos un solo carácter en la posición.
-            int endOffset = startOffset + 1; // Resaltar solo un caracter por simplicidad.
-                                            // Idealmente, si el token tiene longitud, sería startOffset + token.lexeme.length()
-            
-            // Asegurarse que endOffset no exceda la longitud del texto o la línea
-            if (startOffset < inputArea.getDocument().getLength()) {
-                 endOffset = Math.min(endOffset, inputArea.getDocument().getLength());
-                 endOffset = Math.min(endOffset, inputArea.getLineEndOffset(docLine)); //No pasar de la linea
-
-                 if(startOffset < endOffset){ //Asegurar que el rango sea valido
-                     inputArea.getHighlighter().addHighlight(startOffset, endOffset, errorPainter);
-                 } else if (startOffset == endOffset && startOffset < inputArea.getDocument().getLength()){ //Si solo un char y no es el final
-                     inputArea.getHighlighter().addHighlight(startOffset, startOffset +1, errorPainter);
-                 }
-            }
 
+    // Selecciona en el código el token de una fila de la tabla.
+    private void jumpToToken(int row) {
+        if (row < 0) {
+            return;
+        }
+        TokenBuffer tokens = tokenTableModel.getTokens();
+        int index = tokenTableModel.tokenIndex(tokenTable.convertRowIndexToModel(row));
+        // El código pudo cambiar después del análisis: no salirse del documento
+        int length = inputArea.getDocument().getLength();
+        int start = Math.min(tokens.start(index), length);
+        int end = Math.min(start + tokens.length(index), length);
+        inputArea.requestFocusInWindow();
+        inputArea.select(start, end);
+    }
+
+    // Resalta el tramo de código del token señalado por el diagnóstico.
+    private void highlightError(Diagnostic diagnostic) {
+        // El código pudo cambiar después del análisis: no salirse del documento
+        int documentLength = inputArea.getDocument().getLength();
+        int startOffset = diagnostic.offset();
+        if (startOffset < 0 || startOffset >= documentLength) {
+            return; // Sin posición, o en el EOF
+        }
+        // El EOF y otros tokens vacíos se marcan con un carácter, para que se vean
+        int endOffset = Math.min(startOffset + Math.max(diagnostic.length(), 1), documentLength);
+        try {
+            inputArea.getHighlighter().addHighlight(startOffset, endOffset, errorPainter);
         } catch (BadLocationException ex) {
-            System.err.println("Error al resaltar: No se pudo obtener la ubicación " + line + "," + col + ". Detalle: " + ex.getMessage());
+            System.err.println("Error al resaltar: No se pudo obtener la ubicación " + diagnostic.line() + ","
+                    + diagnostic.column() + ". Detalle: " + ex.getMessage());
         }
     }
 
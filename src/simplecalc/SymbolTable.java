@@ -0,0 +1,170 @@
+// SymbolTable.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Tabla de símbolos del Parser: cada nombre de variable se interna una sola vez
+// y recibe un slot entero denso (0, 1, 2, ... en orden de aparición). Ese slot es
+// el que usan Ast.Var, el Evaluator, el JvmCompiler y la VirtualMachine.
+//
+// También lleva qué variables están definitivamente asignadas en el punto actual
+// del análisis, como un bit por slot.
+public class SymbolTable {
+
+    private String[] names = new String[16];
+    private Ast.Var[] vars = new Ast.Var[16];
+    private int size = 0;
+
+    // Tabla hash de direccionamiento abierto: guarda slot + 1 (0 = vacío).
+    // Se busca por rango de caracteres para no crear un String en cada uso de un ID.
+    private int[] table = new int[32];
+
+    private final BitSet assigned = new BitSet();
+    // Variables asignadas en algún punto anterior, aunque sea dentro de un SI.
+    // No se restaura junto con 'assigned'.
+    private final BitSet everAssigned = new BitSet();
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    public Ast.Var var(int slot) {
+        return vars[slot];
+    }
+
+    // Nombres en orden de slot: names().get(slot).
+    public List<String> names() {
+        return new ArrayList<>(Arrays.asList(names).subList(0, size));
+    }
+
+    // Slot de text[from, to), o -1 si el nombre no se ha internado.
+    public int slotOf(CharSequence text, int from, int to) {
+        int mask = table.length - 1;
+        for (int i = hash(text, from, to) & mask; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (sameName(names[entry - 1], text, from, to)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public int slotOf(String name) {
+        return slotOf(name, 0, name.length());
+    }
+
+    // Devuelve el slot de text[from, to), creándolo si es nuevo.
+    public int intern(CharSequence text, int from, int to) {
+        int slot = slotOf(text, from, to);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            vars = Arrays.copyOf(vars, size * 2);
+        }
+        slot = size++;
+        names[slot] = text.subSequence(from, to).toString();
+        vars[slot] = new Ast.Var(names[slot], slot);
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(slot);
+        }
+        return slot;
+    }
+
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    // ---- Asignación definitiva ----
+
+    public boolean isAssigned(int slot) {
+        return slot >= 0 && assigned.get(slot);
+    }
+
+    // true si la variable recibió valor antes pero no en todos los caminos
+    // (solo dentro de la acción de un SI).
+    public boolean isConditionallyAssigned(int slot) {
+        return slot >= 0 && everAssigned.get(slot) && !assigned.get(slot);
+    }
+
+    void markAssigned(int slot) {
+        assigned.set(slot);
+        everAssigned.set(slot);
+    }
+
+    // Estado actual, para restaurarlo después de una rama que puede no ejecutarse.
+    BitSet saveAssigned() {
+        return (BitSet) assigned.clone();
+    }
+
+    void restoreAssigned(BitSet saved) {
+        assigned.clear();
+        assigned.or(saved);
+    }
+
+    // Olvida qué variables tienen valor, pero conserva los slots.
+    void clearAssigned() {
+        assigned.clear();
+        everAssigned.clear();
+    }
+
+    void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(vars, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+        assigned.clear();
+        everAssigned.clear();
+    }
+
+    // ---- Tabla hash ----
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int slot = 0; slot < size; slot++) {
+            insert(slot);
+        }
+    }
+
+    private void insert(int slot) {
+        String name = names[slot];
+        int mask = table.length - 1;
+        int i = hash(name, 0, name.length()) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    private static int hash(CharSequence text, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean sameName(String name, CharSequence text, int from, int to) {
+        if (name.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,24 +2,17 @@
 package simplecalc;
 
 public class SyntaxError extends RuntimeException {
-    public final Token token;
-    public final String specificMessage;
+    public final Diagnostic diagnostic;
 
-    public SyntaxError(Token token, String message, String specificMessage) {
-        super(message);
-        this.token = token;
-        this.specificMessage = specificMessage;
+    public SyntaxError(Diagnostic diagnostic) {
+        // Se usa para cortar el análisis, no para depurar: sin traza de pila, que
+        // es lo más caro de crear la excepción en programas con muchos errores
+        super(null, null, false, false);
+        this.diagnostic = diagnostic;
     }
 
     @Override
     public String getMessage() {
-        if (token != null && token.type != Token.TokenType.EOF) {
-            return String.format("[Línea %d, Col %d] Error en '%s': %s",
-                    token.line, token.column, token.lexeme, specificMessage);
-        } else if (token != null) {
-            return String.format("[Línea %d, Col %d] Error al final de la entrada: %s",
-                    token.line, token.column, specificMessage);
-        }
-        return specificMessage;
+        return diagnostic.format();
     }
-}
\ No newline at end of file
+}
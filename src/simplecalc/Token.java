@@ -35,18 +35,38 @@ public class Token {
     public final Object literal; // Para números o cadenas, si se convierten en el lexer
     public final int line;
     public final int column;
+    public final int offset; // Offset del primer carácter del token en el código fuente (-1 si se desconoce)
+    public final int length; // Cantidad de caracteres del código fuente que abarca el token
+    public final Diagnostic error; // Solo en tokens ERROR: el error léxico; null en los demás
 
     public Token(TokenType type, String lexeme, Object literal, int line, int column) {
+        this(type, lexeme, literal, line, column, -1, lexeme != null ? lexeme.length() : 0);
+    }
+
+    public Token(TokenType type, String lexeme, Object literal, int line, int column, int offset, int length) {
+        this(type, lexeme, literal, line, column, offset, length, null);
+    }
+
+    public Token(TokenType type, String lexeme, Object literal, int line, int column, int offset, int length,
+                 Diagnostic error) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
         this.column = column;
+        this.offset = offset;
+        this.length = length;
+        this.error = error;
     }
 
     @Override
     public String toString() {
         // Para la tabla de tokens
+        return formatTableRow(type, lexeme, literal, line, column);
+    }
+
+    // Formato de una fila de la tabla; también lo usa TokenBuffer sin crear el Token.
+    static String formatTableRow(TokenType type, String lexeme, Object literal, int line, int column) {
         String literalStr = (literal != null) ? literal.toString() : "";
         return String.format("| %-25s | %-20s | %-15s | %4d | %4d |",
                 type, lexeme, literalStr, line, column);
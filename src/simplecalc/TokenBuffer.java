@@ -0,0 +1,370 @@
+// TokenBuffer.java
+package simplecalc;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Flujo de tokens compacto: en lugar de un objeto Token por token, guarda
+// arreglos paralelos de enteros (tipo, offset, longitud, línea y literal).
+// Los lexemas se crean solo cuando alguien los pide, a partir del código fuente.
+public class TokenBuffer {
+    private static final Token.TokenType[] TYPES = Token.TokenType.values();
+
+    private CharSequence source; // Cambia solo con replace()
+    private final LineIndex lineIndex;
+
+    private int size = 0;
+    private int[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] literals; // Valor de NUMERO_ENTERO; 0 para los demás tipos
+
+    // Los errores léxicos son raros: se guardan aparte, ordenados por índice de
+    // token, en lugar de reservar un slot por token. De cada uno se guarda la
+    // clave del mensaje y su argumento extra (si tiene); el texto se arma recién
+    // cuando alguien pide el Diagnostic.
+    private int errorCount = 0;
+    private int[] errorTokenIndexes = new int[4];
+    private Diagnostic.Key[] errorKeys = new Diagnostic.Key[4];
+    private Object[] errorArgs = new Object[4];
+
+    private List<Token> listView;
+
+    TokenBuffer(CharSequence source, LineIndex lineIndex) {
+        // Estimación inicial: un token cada ~4 caracteres
+        this(source, lineIndex, Math.max(16, source.length() / 4));
+    }
+
+    TokenBuffer(CharSequence source, LineIndex lineIndex, int capacity) {
+        this.source = source;
+        this.lineIndex = lineIndex;
+        capacity = Math.max(capacity, 1);
+        types = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        literals = new int[capacity];
+    }
+
+    void add(Token.TokenType type, int start, int length, int line, int literal) {
+        if (size == types.length) {
+            grow();
+        }
+        types[size] = type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        literals[size] = literal;
+        size++;
+    }
+
+    // Vacía el buffer para volver a llenarlo con los tokens de 'source',
+    // conservando los arreglos ya reservados (Lexer.reset()).
+    void clear(CharSequence source) {
+        Arrays.fill(errorKeys, 0, errorCount, null);
+        Arrays.fill(errorArgs, 0, errorCount, null);
+        errorCount = 0;
+        size = 0;
+        this.source = source;
+    }
+
+    // 'arg' es el argumento de la clave que sigue al texto del token (null si no hay).
+    void addError(int start, int length, int line, Diagnostic.Key key, Object arg) {
+        if (errorCount == errorTokenIndexes.length) {
+            errorTokenIndexes = Arrays.copyOf(errorTokenIndexes, errorCount * 2);
+            errorKeys = Arrays.copyOf(errorKeys, errorCount * 2);
+            errorArgs = Arrays.copyOf(errorArgs, errorCount * 2);
+        }
+        errorTokenIndexes[errorCount] = size;
+        errorKeys[errorCount] = key;
+        errorArgs[errorCount] = arg;
+        errorCount++;
+        add(Token.TokenType.ERROR, start, length, line, 0);
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        literals = Arrays.copyOf(literals, capacity);
+    }
+
+    // Agrega los primeros 'count' tokens de 'chunk', que se escaneó como un texto
+    // aparte que en este empieza en el offset 'offset' y en la línea 'firstLine'.
+    // Lo usa ParallelLexer para unir los tramos.
+    void append(TokenBuffer chunk, int count, int offset, int firstLine) {
+        int newSize = size + count;
+        if (newSize > types.length) {
+            int capacity = Math.max(newSize, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            literals = Arrays.copyOf(literals, capacity);
+        }
+        System.arraycopy(chunk.types, 0, types, size, count);
+        System.arraycopy(chunk.lengths, 0, lengths, size, count);
+        System.arraycopy(chunk.literals, 0, literals, size, count);
+        int lineShift = firstLine - 1;
+        for (int k = 0; k < count; k++) {
+            starts[size + k] = chunk.starts[k] + offset;
+            lines[size + k] = chunk.lines[k] + lineShift;
+        }
+
+        int chunkErrors = chunk.errorCount;
+        while (chunkErrors > 0 && chunk.errorTokenIndexes[chunkErrors - 1] >= count) {
+            chunkErrors--;
+        }
+        int newErrorCount = errorCount + chunkErrors;
+        if (newErrorCount > errorTokenIndexes.length) {
+            int capacity = Math.max(newErrorCount, errorTokenIndexes.length * 2);
+            errorTokenIndexes = Arrays.copyOf(errorTokenIndexes, capacity);
+            errorKeys = Arrays.copyOf(errorKeys, capacity);
+            errorArgs = Arrays.copyOf(errorArgs, capacity);
+        }
+        for (int e = 0; e < chunkErrors; e++) {
+            errorTokenIndexes[errorCount + e] = chunk.errorTokenIndexes[e] + size;
+        }
+        System.arraycopy(chunk.errorKeys, 0, errorKeys, errorCount, chunkErrors);
+        System.arraycopy(chunk.errorArgs, 0, errorArgs, errorCount, chunkErrors);
+        errorCount = newErrorCount;
+        size = newSize;
+    }
+
+    // Edición incremental: reemplaza los tokens [from, to) por los de 'lexed'
+    // (sin su EOF), que se escanearon desde el offset 'offset' del texto nuevo
+    // empezando en la línea 'firstLine'. Los tokens siguientes se desplazan
+    // 'charDelta' caracteres y 'lineDelta' líneas. El LineIndex lo actualiza
+    // quien llama.
+    void replace(CharSequence newSource, int from, int to, TokenBuffer lexed,
+                 int offset, int firstLine, int charDelta, int lineDelta) {
+        int count = lexed.size - 1; // Sin el EOF del tramo
+        int tail = size - to;
+        int newSize = from + count + tail;
+        if (newSize > types.length) {
+            int capacity = Math.max(newSize, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            literals = Arrays.copyOf(literals, capacity);
+        }
+        int newTo = from + count;
+        System.arraycopy(types, to, types, newTo, tail);
+        System.arraycopy(starts, to, starts, newTo, tail);
+        System.arraycopy(lengths, to, lengths, newTo, tail);
+        System.arraycopy(lines, to, lines, newTo, tail);
+        System.arraycopy(literals, to, literals, newTo, tail);
+        for (int i = newTo; i < newTo + tail; i++) {
+            starts[i] += charDelta;
+            lines[i] += lineDelta;
+        }
+        for (int k = 0; k < count; k++) {
+            types[from + k] = lexed.types[k];
+            starts[from + k] = lexed.starts[k] + offset;
+            lengths[from + k] = lexed.lengths[k];
+            lines[from + k] = lexed.lines[k] + firstLine - 1;
+            literals[from + k] = lexed.literals[k];
+        }
+
+        // Errores léxicos: se quitan los del tramo viejo y se insertan los del nuevo
+        int keep = lowerErrorBound(from);
+        int tailStart = lowerErrorBound(to);
+        int tailErrors = errorCount - tailStart;
+        int newErrorCount = keep + lexed.errorCount + tailErrors;
+        if (newErrorCount > errorTokenIndexes.length) {
+            int capacity = Math.max(newErrorCount, errorTokenIndexes.length * 2);
+            errorTokenIndexes = Arrays.copyOf(errorTokenIndexes, capacity);
+            errorKeys = Arrays.copyOf(errorKeys, capacity);
+            errorArgs = Arrays.copyOf(errorArgs, capacity);
+        }
+        System.arraycopy(errorTokenIndexes, tailStart, errorTokenIndexes, keep + lexed.errorCount, tailErrors);
+        System.arraycopy(errorKeys, tailStart, errorKeys, keep + lexed.errorCount, tailErrors);
+        System.arraycopy(errorArgs, tailStart, errorArgs, keep + lexed.errorCount, tailErrors);
+        for (int e = 0; e < lexed.errorCount; e++) {
+            errorTokenIndexes[keep + e] = lexed.errorTokenIndexes[e] + from;
+            errorKeys[keep + e] = lexed.errorKeys[e];
+            errorArgs[keep + e] = lexed.errorArgs[e];
+        }
+        for (int e = keep + lexed.errorCount; e < newErrorCount; e++) {
+            errorTokenIndexes[e] += newTo - to;
+        }
+        if (newErrorCount < errorCount) {
+            Arrays.fill(errorKeys, newErrorCount, errorCount, null);
+            Arrays.fill(errorArgs, newErrorCount, errorCount, null);
+        }
+        errorCount = newErrorCount;
+
+        size = newSize;
+        source = newSource;
+    }
+
+    // Primer índice de error cuyo token es >= tokenIndex.
+    private int lowerErrorBound(int tokenIndex) {
+        int pos = Arrays.binarySearch(errorTokenIndexes, 0, errorCount, tokenIndex);
+        return (pos >= 0) ? pos : -(pos + 1);
+    }
+
+    // Primer token cuyo offset es >= offset (los offsets son crecientes).
+    int firstTokenAtOrAfter(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Suma en counts[ordinal del tipo] la cantidad de tokens de cada tipo (AnalysisMetrics).
+    void countByType(int[] counts) {
+        for (int i = 0; i < size; i++) {
+            counts[types[i]]++;
+        }
+    }
+
+    // Tokens ERROR en orden, sin recorrer todo el buffer: errorToken(0 .. errorCount()-1).
+    public int errorCount() {
+        return errorCount;
+    }
+
+    public int errorToken(int k) {
+        return errorTokenIndexes[k];
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public LineIndex getLineIndex() {
+        return lineIndex;
+    }
+
+    public Token.TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int column(int index) {
+        return lineIndex.getColumn(starts[index], lines[index]);
+    }
+
+    // Valor entero de un NUMERO_ENTERO, sin crear el Integer.
+    public int intLiteral(int index) {
+        return literals[index];
+    }
+
+    // Error léxico de un token ERROR; null para los demás tipos.
+    public Diagnostic errorDiagnostic(int index) {
+        int pos = Arrays.binarySearch(errorTokenIndexes, 0, errorCount, index);
+        if (pos < 0) {
+            return null;
+        }
+        return (errorArgs[pos] != null)
+                ? Diagnostic.at(Diagnostic.Kind.LEXICAL, this, index, errorKeys[pos], errorArgs[pos])
+                : Diagnostic.at(Diagnostic.Kind.LEXICAL, this, index, errorKeys[pos]);
+    }
+
+    // Mensaje del error léxico de un token ERROR; null para los demás tipos.
+    public String errorMessage(int index) {
+        Diagnostic error = errorDiagnostic(index);
+        return (error != null) ? error.message() : null;
+    }
+
+    // Lexema con el mismo contenido que tendría el Token equivalente. En un token
+    // ERROR es solo el texto que no se pudo reconocer (ver errorDiagnostic()).
+    public String lexeme(int index) {
+        int start = starts[index];
+        switch (type(index)) {
+            case EOF:
+                return "";
+            case EOL:
+                return "\n";
+            default:
+                return source.subSequence(start, start + lengths[index]).toString();
+        }
+    }
+
+    public Object literal(int index) {
+        switch (type(index)) {
+            case NUMERO_ENTERO:
+                return literals[index];
+            case CADENA_LITERAL:
+                int start = starts[index];
+                return source.subSequence(start + 1, start + lengths[index] - 1).toString();
+            case EOL:
+                return "\\n";
+            default:
+                return null;
+        }
+    }
+
+    // Materializa el token 'index' como objeto (para código que necesita un Token).
+    public Token get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Índice de token fuera de rango: " + index);
+        }
+        return new Token(type(index), lexeme(index), literal(index), lines[index], column(index),
+                starts[index], lengths[index], type(index) == Token.TokenType.ERROR ? errorDiagnostic(index) : null);
+    }
+
+    // Fila de la tabla de tokens, igual a get(index).toString().
+    public String toTableRow(int index) {
+        return Token.formatTableRow(type(index), lexeme(index), literal(index), lines[index], column(index));
+    }
+
+    // Vista de solo lectura como List<Token> para el código existente. Cada get()
+    // materializa un Token nuevo, así que el código sensible al rendimiento
+    // debería leer los arreglos directamente.
+    public List<Token> asList() {
+        if (listView == null) {
+            listView = new ListView();
+        }
+        return listView;
+    }
+
+    // Si la lista es una vista de un TokenBuffer, devuelve ese buffer; si no, null.
+    static TokenBuffer unwrap(List<Token> tokens) {
+        return (tokens instanceof ListView) ? ((ListView) tokens).buffer() : null;
+    }
+
+    private final class ListView extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            return TokenBuffer.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        TokenBuffer buffer() {
+            return TokenBuffer.this;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+// TokenSource.java
+package simplecalc;
+
+// Fuente de tokens bajo demanda. Permite que el Parser consuma el programa
+// token por token sin que exista la lista completa en memoria.
+public interface TokenSource {
+    // Devuelve el siguiente token; al llegar al final devuelve siempre un token EOF.
+    Token nextToken();
+}
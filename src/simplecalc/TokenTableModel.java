@@ -0,0 +1,121 @@
+// TokenTableModel.java
+package simplecalc;
+
+import javax.swing.table.AbstractTableModel;
+
+// Modelo de la tabla de tokens del IDE, directamente sobre el TokenBuffer: no
+// copia ni formatea nada por adelantado, y cada celda se arma solo cuando el
+// JTable la pinta (es decir, solo para las filas visibles).
+public class TokenTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"#", "Tipo de Token", "Lexema", "Literal", "Line", "Col"};
+
+    private TokenBuffer tokens;
+    private Token.TokenType typeFilter; // null = todos los tipos
+    private int[] rows;                 // Índices de token que pasan el filtro; null = todos
+
+    public TokenTableModel() {
+        this(null);
+    }
+
+    public TokenTableModel(TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    public void setTokens(TokenBuffer tokens) {
+        this.tokens = tokens;
+        applyFilter();
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    // Muestra solo los tokens del tipo dado; null los muestra todos.
+    public void setTypeFilter(Token.TokenType type) {
+        this.typeFilter = type;
+        applyFilter();
+    }
+
+    public Token.TokenType getTypeFilter() {
+        return typeFilter;
+    }
+
+    // Índice en el TokenBuffer del token que muestra la fila.
+    public int tokenIndex(int row) {
+        return (rows != null) ? rows[row] : row;
+    }
+
+    private void applyFilter() {
+        rows = null;
+        if (tokens != null && typeFilter != null) {
+            // Dos pasadas sobre los tipos: contar y luego llenar el arreglo exacto
+            int count = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                if (tokens.type(i) == typeFilter) {
+                    count++;
+                }
+            }
+            rows = new int[count];
+            int next = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                if (tokens.type(i) == typeFilter) {
+                    rows[next++] = i;
+                }
+            }
+        }
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        if (tokens == null) {
+            return 0;
+        }
+        return (rows != null) ? rows.length : tokens.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 0:
+            case 4:
+            case 5:
+                return Integer.class;
+            default:
+                return Object.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int index = tokenIndex(row);
+        switch (column) {
+            case 0:
+                return index;
+            case 1:
+                return tokens.type(index);
+            case 2:
+                return tokens.lexeme(index);
+            case 3:
+                if (tokens.type(index) == Token.TokenType.ERROR) {
+                    return tokens.errorMessage(index); // El error léxico va aparte del lexema
+                }
+                Object literal = tokens.literal(index);
+                return (literal != null) ? literal.toString() : "";
+            case 4:
+                return tokens.line(index);
+            default:
+                return tokens.column(index);
+        }
+    }
+}
@@ -0,0 +1,489 @@
+// ValidationServer.java
+package simplecalc;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Modo servidor: un proceso que queda levantado y valida (o ejecuta) programas
+// que le mandan los plugins de editores y las herramientas de build, sin pagar
+// en cada pedido el arranque de la JVM ni un JIT frío.
+//
+// Escucha en un socket local: TCP en la interfaz de loopback o un socket de
+// dominio Unix. Cada conexión se atiende en un hilo virtual y puede mandar
+// varios pedidos seguidos.
+//
+// Protocolo: mensajes con un prefijo de longitud (int de 4 bytes, big-endian)
+// seguido de esa cantidad de bytes UTF-8. En un pedido, la primera línea es el
+// comando y el resto el código:
+//   VALIDATE            análisis léxico, sintáctico y semántico
+//   RUN v1 v2 ...       lo mismo y, si es válido, lo ejecuta con esos valores de ENTRADA
+//   STATS               contadores y percentiles de latencia
+//   SHUTDOWN            cierre ordenado del servidor
+// La respuesta es un objeto JSON, por ejemplo
+//   {"status":"invalid","tokens":37,"micros":412,"diagnostics":[...]}
+//   {"status":"valid","tokens":12,"micros":95,"diagnostics":[],"outputs":["8","hola"]}
+// con status "valid", "invalid" o "error" (pedido mal formado o error al ejecutar,
+// con "message").
+public class ValidationServer {
+    public static final int DEFAULT_PORT = 7455;
+    public static final int MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+    // Latencias guardadas para los percentiles: las de los últimos pedidos
+    private static final int LATENCY_WINDOW = 1 << 16;
+
+    private final SocketAddress address;
+    private final int maxErrors;
+    private ServerSocketChannel server;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Connection> open = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean stopping = false;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private final AtomicLong latencyCount = new AtomicLong();
+
+    // 'maxErrors' como en Analysis.of(CharSequence, int): 0 = todos los errores.
+    public ValidationServer(SocketAddress address, int maxErrors) {
+        this.address = address;
+        this.maxErrors = maxErrors;
+    }
+
+    // Abre el socket y empieza a aceptar conexiones en un hilo propio.
+    public void start() throws IOException {
+        if (address instanceof UnixDomainSocketAddress unix) {
+            Files.deleteIfExists(unix.getPath()); // Restos de una corrida anterior
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "simplecalc-server");
+        acceptor.start();
+    }
+
+    // Dirección efectiva (con el puerto real si se pidió el 0).
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    // Espera hasta que el servidor termine de cerrarse.
+    public void awaitTermination() throws InterruptedException {
+        stopped.await();
+    }
+
+    // Cierre ordenado: no acepta más conexiones, cierra las que están esperando
+    // un pedido y deja terminar los pedidos en curso (hasta 'timeoutSeconds').
+    public void shutdown(long timeoutSeconds) {
+        synchronized (this) {
+            if (stopping) {
+                return;
+            }
+            stopping = true;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Ya no importa
+        }
+        for (Connection connection : open) {
+            connection.closeIfIdle();
+        }
+        connections.shutdown();
+        try {
+            if (!connections.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                connections.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            connections.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (address instanceof UnixDomainSocketAddress unix) {
+            try {
+                Files.deleteIfExists(unix.getPath());
+            } catch (IOException e) {
+                // Queda el archivo del socket; el próximo start() lo borra
+            }
+        }
+        stopped.countDown();
+    }
+
+    private void acceptLoop() {
+        while (!stopping) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return; // shutdown()
+            } catch (IOException e) {
+                if (stopping) {
+                    return;
+                }
+                System.err.println("Error al aceptar una conexión: " + e.getMessage());
+                continue;
+            }
+            Connection connection = new Connection(channel);
+            open.add(connection);
+            try {
+                connections.execute(connection);
+            } catch (RejectedExecutionException e) {
+                connection.close(); // Llegó justo durante el cierre
+            }
+        }
+    }
+
+    // ---- Pedidos ----
+
+    // Una conexión: lee pedidos hasta que el cliente cierra o el servidor se detiene.
+    private final class Connection implements Runnable {
+        private final SocketChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(4);
+        private boolean busy = false; // Con un pedido en curso; protegido por 'this'
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] request = readFrame();
+                    if (request == null) {
+                        return; // El cliente cerró
+                    }
+                    synchronized (this) {
+                        if (stopping) {
+                            return;
+                        }
+                        busy = true;
+                    }
+                    String command = firstLine(request).trim();
+                    writeFrame(handle(command, request));
+                    synchronized (this) {
+                        busy = false;
+                    }
+                    if (command.equals("SHUTDOWN")) {
+                        // Desde otro hilo: shutdown() espera a que termine esta conexión
+                        Thread.ofPlatform().start(new Runnable() {
+                            @Override
+                            public void run() {
+                                shutdown(30);
+                            }
+                        });
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // Conexión cortada o cerrada por shutdown(): no hay a quién responderle
+            } finally {
+                close();
+            }
+        }
+
+        synchronized void closeIfIdle() {
+            if (!busy) {
+                close();
+            }
+        }
+
+        void close() {
+            open.remove(this);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nada más que hacer
+            }
+        }
+
+        // Un mensaje completo, o null si el cliente cerró antes de empezar otro.
+        private byte[] readFrame() throws IOException {
+            header.clear();
+            if (!readFully(header)) {
+                return null;
+            }
+            int length = header.getInt(0);
+            if (length < 0 || length > MAX_REQUEST_BYTES) {
+                writeFrame(errorJson("Longitud de pedido inválida: " + length + " (máximo " + MAX_REQUEST_BYTES + ")."));
+                throw new IOException("Pedido demasiado grande");
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            if (!readFully(body) && length > 0) {
+                throw new IOException("Pedido incompleto");
+            }
+            return body.array();
+        }
+
+        private boolean readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    if (buffer.position() == 0) {
+                        return false;
+                    }
+                    throw new IOException("Pedido incompleto");
+                }
+            }
+            return true;
+        }
+
+        private void writeFrame(String json) throws IOException {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer frame = ByteBuffer.allocate(4 + bytes.length);
+            frame.putInt(bytes.length).put(bytes).flip();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        }
+    }
+
+    private String handle(String command, byte[] request) {
+        long start = System.nanoTime();
+        String response;
+        try {
+            String[] parts = command.split("\\s+");
+            switch (parts[0]) {
+                case "VALIDATE":
+                    response = validate(source(request), start);
+                    break;
+                case "RUN":
+                    response = run(source(request), parseEntradas(parts), start);
+                    break;
+                case "STATS":
+                    return statsJson(); // No cuenta como pedido
+                case "SHUTDOWN":
+                    return "{\"status\":\"stopping\"}";
+                default:
+                    failures.increment();
+                    return errorJson("Comando desconocido: '" + parts[0] + "'. Se esperaba VALIDATE, RUN, STATS o SHUTDOWN.");
+            }
+        } catch (IllegalArgumentException e) { // Incluye NumberFormatException
+            response = errorJson(e.getMessage());
+            failures.increment();
+        } catch (RuntimeException | StackOverflowError e) {
+            // Un programa que rompe el análisis no debe tirar la conexión
+            response = errorJson("Error interno del analizador: " + e);
+            failures.increment();
+        }
+        recordLatency(System.nanoTime() - start);
+        return response;
+    }
+
+    private String validate(String source, long start) {
+        Analysis analysis = Analysis.of(source, maxErrors);
+        StringBuilder sb = new StringBuilder(128);
+        appendResult(sb, analysis.valid(), analysis.tokenCount(), analysis.diagnostics(), start);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private String run(String source, int[] entradas, long start) {
+        // Se necesita el AST, así que acá no se usa Analysis
+        Lexer lexer = new Lexer(source);
+        lexer.setMaxErrors(maxErrors);
+        AnalysisMetrics metrics = AnalysisMetrics.get();
+        long lexStart = System.nanoTime();
+        TokenBuffer tokens = lexer.scanTokenBuffer();
+        metrics.recordLex(source, tokens, System.nanoTime() - lexStart);
+        List<Diagnostic> diagnostics = Analysis.lexicalErrors(tokens);
+        Parser parser = null;
+        if (maxErrors == 0 || diagnostics.size() < maxErrors) {
+            parser = new Parser(tokens);
+            parser.setMaxErrors(maxErrors > 0 ? maxErrors - diagnostics.size() : 0);
+            parser.setMetrics(metrics);
+            long parseStart = System.nanoTime();
+            boolean syntaxValid = parser.parse();
+            metrics.recordParse(parser.getDiagnostics(), System.nanoTime() - parseStart);
+            diagnostics.addAll(parser.getDiagnostics());
+            if (!syntaxValid) {
+                parser = null;
+            }
+        }
+        if (parser == null || !diagnostics.isEmpty()) {
+            StringBuilder sb = new StringBuilder(128);
+            appendResult(sb, false, tokens.size(), diagnostics, start);
+            return sb.append('}').toString();
+        }
+        List<String> outputs;
+        try {
+            outputs = new VirtualMachine(VmProgram.lower(parser.getProgram())).run(entradas);
+        } catch (EvaluationError e) {
+            failures.increment();
+            return errorJson(e.getMessage()); // Ya dice "Error de ejecución"
+        }
+        StringBuilder sb = new StringBuilder(128);
+        appendResult(sb, true, tokens.size(), diagnostics, start);
+        sb.append(",\"outputs\":[");
+        for (int i = 0; i < outputs.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            BatchValidator.appendJsonString(sb, outputs.get(i));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void appendResult(StringBuilder sb, boolean valid, int tokens, List<Diagnostic> diagnostics,
+                                     long start) {
+        sb.append("{\"status\":\"").append(valid ? "valid" : "invalid").append('"');
+        sb.append(",\"tokens\":").append(tokens);
+        sb.append(",\"micros\":").append((System.nanoTime() - start) / 1000);
+        sb.append(",\"diagnostics\":[");
+        for (int i = 0; i < diagnostics.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            BatchValidator.appendJsonDiagnostic(sb, diagnostics.get(i));
+        }
+        sb.append(']');
+    }
+
+    private static String errorJson(String message) {
+        StringBuilder sb = new StringBuilder("{\"status\":\"error\",\"message\":");
+        BatchValidator.appendJsonString(sb, message);
+        return sb.append('}').toString();
+    }
+
+    private static String firstLine(byte[] request) {
+        int end = 0;
+        while (end < request.length && request[end] != '\n') {
+            end++;
+        }
+        return new String(request, 0, end, StandardCharsets.UTF_8).replace("\r", "");
+    }
+
+    private static String source(byte[] request) {
+        int start = 0;
+        while (start < request.length && request[start] != '\n') {
+            start++;
+        }
+        start = Math.min(start + 1, request.length);
+        return new String(request, start, request.length - start, StandardCharsets.UTF_8);
+    }
+
+    private static int[] parseEntradas(String[] parts) {
+        int[] values = new int[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            try {
+                values[i - 1] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor de ENTRADA inválido: '" + parts[i] + "'.");
+            }
+        }
+        return values;
+    }
+
+    // ---- Latencias ----
+
+    private void recordLatency(long nanos) {
+        requests.increment();
+        // Cada pedido escribe su propio lugar de la ventana circular
+        latencies[(int) (latencyCount.getAndIncrement() & (LATENCY_WINDOW - 1))] = nanos;
+    }
+
+    // Percentiles (en microsegundos) de los últimos pedidos, de 0 a 100.
+    public long[] latencyPercentiles(double... percentiles) {
+        int count = (int) Math.min(latencyCount.get(), LATENCY_WINDOW);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long[] result = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length && count > 0; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100.0 * count) - 1;
+            result[i] = sorted[Math.max(0, Math.min(rank, count - 1))] / 1000;
+        }
+        return result;
+    }
+
+    public String statsJson() {
+        long[] p = latencyPercentiles(50, 90, 99, 99.9, 100);
+        return String.format(Locale.ROOT,
+                "{\"status\":\"stats\",\"requests\":%d,\"failures\":%d,\"connections\":%d,"
+                        + "\"latencyMicros\":{\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}}",
+                requests.sum(), failures.sum(), open.size(), p[0], p[1], p[2], p[3], p[4]);
+    }
+
+    // ---- Línea de comandos ----
+
+    // simplecalc --serve [--port=N | --socket=ARCHIVO] [--max-errors=N]
+    public static int run(String[] args) {
+        SocketAddress address = null;
+        int maxErrors = 0;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--port=")) {
+                    int port = Integer.parseInt(arg.substring("--port=".length()));
+                    if (port < 0 || port > 65535) {
+                        throw new IllegalArgumentException("Puerto fuera de rango: " + port);
+                    }
+                    address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+                } else if (arg.startsWith("--socket=")) {
+                    address = UnixDomainSocketAddress.of(Path.of(arg.substring("--socket=".length())));
+                } else if (arg.startsWith("--max-errors=")) {
+                    maxErrors = Integer.parseInt(arg.substring("--max-errors=".length()));
+                    if (maxErrors < 1) {
+                        throw new IllegalArgumentException("--max-errors debe ser un entero positivo: " + arg);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Opción desconocida: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) { // Incluye NumberFormatException
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Uso: simplecalc --serve [--port=N | --socket=ARCHIVO] [--max-errors=N]");
+            return BatchValidator.EXIT_ERROR;
+        }
+        if (address == null) {
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+        }
+
+        final ValidationServer server = new ValidationServer(address, maxErrors);
+        try {
+            server.start();
+            System.err.println("Escuchando en " + server.getAddress() + " (SHUTDOWN o Ctrl+C para terminar)");
+        } catch (IOException e) {
+            System.err.println("Error de E/S: no se pudo abrir " + address + ": " + e.getMessage());
+            return BatchValidator.EXIT_ERROR;
+        }
+        // Ctrl+C / SIGTERM también cierran en orden
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.shutdown(10);
+            }
+        }));
+        try {
+            server.awaitTermination();
+        } catch (InterruptedException e) {
+            server.shutdown(10);
+        }
+        System.err.println("Servidor detenido: " + server.statsJson());
+        return BatchValidator.EXIT_VALID;
+    }
+}
@@ -0,0 +1,93 @@
+// VirtualMachine.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Ejecuta un VmProgram con un bucle de despacho sobre el int[] de instrucciones.
+// Los registros se reservan una vez por instancia y se reutilizan en cada run(),
+// así que ejecutar no crea objetos (fuera de lo que hagan la entrada y la salida).
+// Una instancia no debe usarse desde varios hilos a la vez.
+public class VirtualMachine {
+    private final VmProgram program;
+    private final int[] registers;
+
+    public VirtualMachine(VmProgram program) {
+        this.program = program;
+        this.registers = new int[program.registerCount];
+    }
+
+    public void run(EntradaSource entradas, SalidaSink salidas) {
+        final int[] code = program.code;
+        final int[] r = registers;
+        Arrays.fill(r, 0);
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case VmProgram.CONST:
+                    r[code[pc + 1]] = code[pc + 2];
+                    pc += 3;
+                    break;
+                case VmProgram.MOVE:
+                    r[code[pc + 1]] = r[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case VmProgram.ADD:
+                    r[code[pc + 1]] = r[code[pc + 2]] + r[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case VmProgram.SUB:
+                    r[code[pc + 1]] = r[code[pc + 2]] - r[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case VmProgram.MUL:
+                    r[code[pc + 1]] = r[code[pc + 2]] * r[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case VmProgram.DIV: {
+                    int divisor = r[code[pc + 3]];
+                    if (divisor == 0) {
+                        int position = code[pc + 4];
+                        throw Evaluator.divisionByZero(program.positions[position], program.positions[position + 1]);
+                    }
+                    r[code[pc + 1]] = r[code[pc + 2]] / divisor;
+                    pc += 5;
+                    break;
+                }
+                case VmProgram.INPUT:
+                    r[code[pc + 1]] = entradas.next(program.strings[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case VmProgram.EMIT:
+                    salidas.emit(r[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case VmProgram.EMIT_TEXT:
+                    salidas.emit(program.strings[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case VmProgram.JGE:
+                    pc = (r[code[pc + 1]] >= r[code[pc + 2]]) ? code[pc + 3] : pc + 4;
+                    break;
+                case VmProgram.JLE:
+                    pc = (r[code[pc + 1]] <= r[code[pc + 2]]) ? code[pc + 3] : pc + 4;
+                    break;
+                case VmProgram.JNE:
+                    pc = (r[code[pc + 1]] != r[code[pc + 2]]) ? code[pc + 3] : pc + 4;
+                    break;
+                case VmProgram.HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Instrucción inválida " + code[pc] + " en pc=" + pc);
+            }
+        }
+    }
+
+    // Atajo: ejecuta con los valores de ENTRADA dados y devuelve las SALIDA como texto.
+    public List<String> run(int... entradas) {
+        List<String> salidas = new ArrayList<>();
+        run(EntradaSource.of(entradas), SalidaSink.collectingTo(salidas));
+        return salidas;
+    }
+}
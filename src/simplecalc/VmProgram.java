@@ -0,0 +1,183 @@
+// VmProgram.java
+package simplecalc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Programa SimpleCalc bajado a un flujo compacto de instrucciones int[] para
+// VirtualMachine. Las variables son registros (su slot del AST) y los valores
+// intermedios usan registros temporales a continuación de las variables.
+//
+// Formato: cada instrucción es el opcode seguido de sus operandos.
+//   CONST  dst, valor             MOVE   dst, src
+//   ADD/SUB/MUL dst, a, b         DIV    dst, a, b, posición
+//   INPUT  dst, cadena            EMIT   src         EMIT_TEXT cadena
+//   JGE/JLE/JNE a, b, destino     (saltan cuando la condición del SI es falsa)
+//   HALT
+public final class VmProgram {
+    static final int HALT = 0;
+    static final int CONST = 1;
+    static final int MOVE = 2;
+    static final int ADD = 3;
+    static final int SUB = 4;
+    static final int MUL = 5;
+    static final int DIV = 6;
+    static final int INPUT = 7;
+    static final int EMIT = 8;
+    static final int EMIT_TEXT = 9;
+    static final int JGE = 10;
+    static final int JLE = 11;
+    static final int JNE = 12;
+
+    final int[] code;
+    final int registerCount;
+    final String[] strings;   // Nombres de variables de ENTRADA y textos de SALIDA
+    final int[] positions;    // Pares (línea, columna) de cada DIV, para el error de división entre cero
+
+    private VmProgram(int[] code, int registerCount, String[] strings, int[] positions) {
+        this.code = code;
+        this.registerCount = registerCount;
+        this.strings = strings;
+        this.positions = positions;
+    }
+
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    public static VmProgram lower(Ast.Program program) {
+        Lowering lowering = new Lowering(program.variables().size());
+        for (Ast.Statement statement : program.statements()) {
+            lowering.statement(statement);
+        }
+        lowering.emit(HALT);
+        return new VmProgram(Arrays.copyOf(lowering.code, lowering.length), lowering.maxRegister,
+                lowering.strings.toArray(new String[0]),
+                Arrays.copyOf(lowering.positions, lowering.positionCount));
+    }
+
+    private static final class Lowering {
+        private final int variableCount;
+        private int[] code = new int[64];
+        private int length = 0;
+        private int nextTemp;      // Siguiente registro temporal libre
+        private int maxRegister;
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        private int[] positions = new int[8];
+        private int positionCount = 0;
+
+        Lowering(int variableCount) {
+            this.variableCount = variableCount;
+            this.nextTemp = variableCount;
+            this.maxRegister = variableCount;
+        }
+
+        void statement(Ast.Statement statement) {
+            nextTemp = variableCount; // Los temporales no sobreviven entre sentencias
+            if (statement instanceof Ast.Assignment assignment) {
+                exprInto(assignment.value(), assignment.target().slot());
+            } else if (statement instanceof Ast.Input input) {
+                emit(INPUT, input.target().slot(), string(input.target().name()));
+            } else if (statement instanceof Ast.Output output) {
+                if (output.value() instanceof Ast.Text text) {
+                    emit(EMIT_TEXT, string(text.value()));
+                } else {
+                    emit(EMIT, expr((Ast.Expr) output.value()));
+                }
+            } else {
+                Ast.If conditional = (Ast.If) statement;
+                Ast.Condition condition = conditional.condition();
+                int left = expr(condition.left());
+                int right = expr(condition.right());
+                int jump = (condition.op() == Ast.RelOp.MENOR) ? JGE
+                        : (condition.op() == Ast.RelOp.MAYOR) ? JLE : JNE;
+                emit(jump, left, right, 0);
+                int targetSlot = length - 1;
+                statement(conditional.action());
+                code[targetSlot] = length; // Destino: la instrucción después de la acción
+            }
+        }
+
+        // Evalúa la expresión y devuelve el registro que tiene su valor. Las
+        // variables se usan directamente, sin copiarlas.
+        private int expr(Ast.Expr expr) {
+            if (expr instanceof Ast.Var var) {
+                return var.slot();
+            }
+            int temp = allocateTemp();
+            exprInto(expr, temp);
+            return temp;
+        }
+
+        private void exprInto(Ast.Expr expr, int dst) {
+            if (expr instanceof Ast.Num num) {
+                emit(CONST, dst, num.value());
+            } else if (expr instanceof Ast.Var var) {
+                if (var.slot() != dst) {
+                    emit(MOVE, dst, var.slot());
+                }
+            } else {
+                Ast.Binary binary = (Ast.Binary) expr;
+                int mark = nextTemp;
+                int left = expr(binary.left());
+                int right = expr(binary.right());
+                switch (binary.op()) {
+                    case SUMA:
+                        emit(ADD, dst, left, right);
+                        break;
+                    case RESTA:
+                        emit(SUB, dst, left, right);
+                        break;
+                    case MULT:
+                        emit(MUL, dst, left, right);
+                        break;
+                    default:
+                        emit(DIV, dst, left, right, position(binary.line(), binary.column()));
+                        break;
+                }
+                nextTemp = mark; // Los temporales de los operandos ya se pueden reutilizar
+            }
+        }
+
+        private int allocateTemp() {
+            int temp = nextTemp++;
+            maxRegister = Math.max(maxRegister, nextTemp);
+            return temp;
+        }
+
+        private int string(String value) {
+            Integer index = stringIndexes.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.add(value);
+                stringIndexes.put(value, index);
+            }
+            return index;
+        }
+
+        private int position(int line, int column) {
+            if (positionCount + 2 > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[positionCount++] = line;
+            positions[positionCount++] = column;
+            return positionCount - 2;
+        }
+
+        void emit(int... words) {
+            if (length + words.length > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, length + words.length));
+            }
+            System.arraycopy(words, 0, code, length, words.length);
+            length += words.length;
+        }
+    }
+}